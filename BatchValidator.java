@@ -0,0 +1,290 @@
+package edu.njit.cs314;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Command line validator for files of inputs, one input per line.
+ * Usage: BatchValidator [-threads n] [-out file] [-max-steps n] [-max-depth n]
+ * [-timeout ms] automaton (file|directory)...
+ * where automaton is test1, test2, test2-lr (test2 generated from its grammar), test3
+ * or a snapshot file written by DPDA.save(). Directories are searched recursively.
+ * The limits apply to each input, see RunLimits.
+ * Files are read in chunks of whole lines which are checked in parallel while at most
+ * a few chunks per thread are in memory. For every non-blank line file:line, the
+ * outcome (accept, reject or the limit that stopped the run) and the index of the first
+ * input symbol not consumed are written in input order, and throughput and latency are
+ * reported on stderr at the end.
+ * Date created: 10/18/26
+ */
+public class BatchValidator {
+
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    private static class Chunk {
+        public final String file;
+        public final long firstLine;
+        public final byte[] data;
+
+        public Chunk(String file, long firstLine, byte[] data) {
+            this.file = file;
+            this.firstLine = firstLine;
+            this.data = data;
+        }
+    }
+
+    private static class ChunkResult {
+        public final StringBuilder output = new StringBuilder();
+        public final Histogram latencies = new Histogram();
+        public long accepted;
+        public long stopped;
+        public long tokens;
+    }
+
+    private final DPDA pda;
+    private final RunLimits limits;
+    private final ByteTokenizer tokenizer;
+    private final ExecutorService executor;
+    private final int maxInFlight;
+    private final Deque<Future<ChunkResult>> inFlight = new ArrayDeque<>();
+    private final Writer out;
+    private final Histogram latencies = new Histogram();
+    private long accepted;
+    private long stopped;
+    private long tokens;
+
+    public BatchValidator(DPDA pda, int threads, Writer out) {
+        this(pda, RunLimits.NONE, threads, out);
+    }
+
+    public BatchValidator(DPDA pda, RunLimits limits, int threads, Writer out) {
+        this.pda = pda;
+        this.limits = limits;
+        this.tokenizer = pda.newTokenizer();
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.maxInFlight = 2 * threads;
+        this.out = out;
+    }
+
+    /**
+     * Looks up one of the automata defined by the tests of DPDA, or loads a snapshot
+     * @param name
+     * @return the DPDA
+     */
+    public static DPDA loadAutomaton(String name) throws Exception {
+        switch (name) {
+            case "test1":
+                return DPDA.buildTest1();
+            case "test2":
+                return DPDA.buildTest2();
+            case "test2-lr":
+                return DPDA.buildTest2Generated();
+            case "test3":
+                return DPDA.buildTest3();
+            default:
+                if (Files.isRegularFile(Paths.get(name))) {
+                    return DPDA.load(Paths.get(name));
+                }
+                throw new IllegalArgumentException("Unknown automaton " + name);
+        }
+    }
+
+    private static List<Path> listFiles(List<String> paths) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String name : paths) {
+            Path path = Paths.get(name);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> walk = Files.walk(path)) {
+                    files.addAll(walk.filter(Files::isRegularFile).sorted()
+                            .collect(Collectors.toList()));
+                }
+            } else {
+                files.add(path);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Reads the file in chunks of whole lines and queues them for validation
+     * @param file
+     */
+    public void validate(Path file)
+            throws IOException, InterruptedException, ExecutionException {
+        String name = file.toString();
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[CHUNK_SIZE];
+            int filled = 0;
+            long line = 1;
+            while (true) {
+                int n = in.read(buffer, filled, buffer.length - filled);
+                if (n < 0) {
+                    if (filled > 0) {
+                        submit(new Chunk(name, line, Arrays.copyOf(buffer, filled)));
+                    }
+                    return;
+                }
+                filled += n;
+                int end = filled - 1;
+                while (end >= 0 && buffer[end] != '\n') {
+                    end--;
+                }
+                if (end < 0) {
+                    // a line longer than the buffer
+                    if (filled == buffer.length) {
+                        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    }
+                    continue;
+                }
+                byte[] data = Arrays.copyOf(buffer, end + 1);
+                submit(new Chunk(name, line, data));
+                for (byte b : data) {
+                    if (b == '\n') {
+                        line++;
+                    }
+                }
+                System.arraycopy(buffer, end + 1, buffer, 0, filled - end - 1);
+                filled -= end + 1;
+            }
+        }
+    }
+
+    private void submit(Chunk chunk)
+            throws IOException, InterruptedException, ExecutionException {
+        while (inFlight.size() >= maxInFlight) {
+            write(inFlight.removeFirst().get());
+        }
+        inFlight.addLast(executor.submit(() -> validate(chunk)));
+    }
+
+    private ChunkResult validate(Chunk chunk) {
+        ChunkResult result = new ChunkResult();
+        ByteBuffer buffer = ByteBuffer.wrap(chunk.data);
+        long line = chunk.firstLine;
+        int start = 0;
+        for (int p = 0; p <= chunk.data.length; p++) {
+            if (p < chunk.data.length && chunk.data[p] != '\n') {
+                continue;
+            }
+            int end = p;
+            if (end > start && chunk.data[end - 1] == '\r') {
+                end--;
+            }
+            if (end > start) {
+                long begin = System.nanoTime();
+                ParseSession session = pda.newSession(limits);
+                buffer.limit(end).position(start);
+                tokenizer.feed(buffer, session);
+                RecognitionResult recognition = session.finish();
+                result.latencies.record(System.nanoTime() - begin);
+                result.tokens += session.consumed();
+                if (recognition.accepted) {
+                    result.accepted++;
+                } else if (recognition.outcome.isStopped()) {
+                    result.stopped++;
+                }
+                result.output.append(chunk.file).append(':').append(line).append('\t')
+                        .append(recognition.outcome.label).append('\t')
+                        .append(recognition.inputIndex).append('\n');
+            }
+            start = p + 1;
+            line++;
+        }
+        return result;
+    }
+
+    private void write(ChunkResult result) throws IOException {
+        out.append(result.output);
+        latencies.add(result.latencies);
+        accepted += result.accepted;
+        stopped += result.stopped;
+        tokens += result.tokens;
+    }
+
+    /**
+     * Waits for all queued chunks and writes their results
+     */
+    public void finish() throws IOException, InterruptedException, ExecutionException {
+        while (!inFlight.isEmpty()) {
+            write(inFlight.removeFirst().get());
+        }
+        out.flush();
+        executor.shutdown();
+    }
+
+    /**
+     * Drops the chunks still queued and stops the worker threads, e.g. after a file
+     * could not be read. Does nothing after finish()
+     */
+    public void cancel() {
+        while (!inFlight.isEmpty()) {
+            inFlight.removeFirst().cancel(true);
+        }
+        executor.shutdownNow();
+    }
+
+    public void printSummary(PrintStream stream, long elapsedNanos) {
+        long inputs = latencies.count();
+        double seconds = Math.max(elapsedNanos, 1) / 1e9;
+        stream.println("inputs: " + inputs + " (" + accepted + " accepted, "
+                + (inputs - accepted - stopped) + " rejected, " + stopped
+                + " stopped by limits), tokens: " + tokens);
+        stream.printf("time: %.3f s, %.0f inputs/s, %.0f tokens/s%n",
+                seconds, inputs / seconds, tokens / seconds);
+        stream.printf("latency per input: p50 %.1f us, p99 %.1f us, max %.1f us%n",
+                latencies.percentile(0.5) / 1e3, latencies.percentile(0.99) / 1e3,
+                latencies.max() / 1e3);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = Runtime.getRuntime().availableProcessors();
+        String outFile = null;
+        RunLimits limits = RunLimits.NONE;
+        int k = 0;
+        while (k < args.length && args[k].startsWith("-")) {
+            if (args[k].equals("-threads") && k + 1 < args.length) {
+                threads = Integer.parseInt(args[k + 1]);
+            } else if (args[k].equals("-out") && k + 1 < args.length) {
+                outFile = args[k + 1];
+            } else if (args[k].equals("-max-steps") && k + 1 < args.length) {
+                limits = limits.withMaxSteps(Integer.parseInt(args[k + 1]));
+            } else if (args[k].equals("-max-depth") && k + 1 < args.length) {
+                limits = limits.withMaxStackDepth(Integer.parseInt(args[k + 1]));
+            } else if (args[k].equals("-timeout") && k + 1 < args.length) {
+                limits = limits.withTimeoutNanos(Long.parseLong(args[k + 1]) * 1_000_000L);
+            } else {
+                throw new IllegalArgumentException("Unknown option " + args[k]);
+            }
+            k += 2;
+        }
+        if (args.length - k < 2) {
+            System.err.println("Usage: BatchValidator [-threads n] [-out file] [-max-steps n]"
+                    + " [-max-depth n] [-timeout ms] automaton (file|directory)...");
+            return;
+        }
+        DPDA pda = loadAutomaton(args[k]);
+        List<Path> files = listFiles(Arrays.asList(args).subList(k + 1, args.length));
+        OutputStream stream = outFile == null ? System.out
+                : Files.newOutputStream(Paths.get(outFile));
+        try (Writer out = new BufferedWriter(
+                new OutputStreamWriter(stream, StandardCharsets.UTF_8), 1 << 16)) {
+            long begin = System.nanoTime();
+            BatchValidator validator = new BatchValidator(pda, limits, threads, out);
+            try {
+                for (Path file : files) {
+                    validator.validate(file);
+                }
+                validator.finish();
+            } finally {
+                validator.cancel();
+            }
+            validator.printSummary(System.err, System.nanoTime() - begin);
+        }
+    }
+}
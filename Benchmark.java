@@ -0,0 +1,353 @@
+package edu.njit.cs314;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Benchmarks of the engine against the automata of the tests of DPDA, to compare
+ * numbers before and after a change to it. The benchmarks to run are the JMH ones of
+ * jmh/DPDABenchmark, built by mvn -Pjmh package. This is a fallback for where that
+ * build cannot be run, e.g. without access to a Maven repository: a plain main() that
+ * does what JMH is set up to do. Each automaton is measured in -forks fresh JVMs after
+ * a warmup, and the result of every operation goes into a volatile sink so that the
+ * work is not optimized away. It also makes the inputs of DPDABenchmark, see input().
+ * Usage: Benchmark [-sizes n,n,...] [-trace-max n] [-derivation-max n] [-time ms]
+ * [-warmup ms] [-forks n] [automaton...]
+ * where automaton is test1, test2, test2-lr or test3 (default all four). For each
+ * automaton it measures
+ * <ul>
+ * <li>build: building the automaton by addTransition(), per transition</li>
+ * <li>load: loading a snapshot of it written by DPDA.save(), per transition</li>
+ * <li>accepts: recognition without a trace, per input token</li>
+ * <li>generated: the same with the code of DPDA.generateCode(), per input token</li>
+ * <li>process: process() with its trace of configurations, per input token</li>
+ * <li>derivations: process() and printDerivations() of its trace, output discarded, per
+ * token</li>
+ * </ul>
+ * on generated inputs of each size (default 10, 1000, 100000 and 10000000 tokens) in
+ * two shapes, flat (abab..$ for test1, n+n*n+..$ for test2, z+y*z-y/z+..$ for test3)
+ * and nested (aa..bb..$, ((..n..))$, ((..z..))$). Each line shows the largest stack
+ * depth of the run. Flat inputs keep the stack at a few symbols for test1 and test3,
+ * whose expressions are left recursive, but the rules of test2 are right recursive, so
+ * its stack grows with any long input and only the nested shape changes how fast.
+ * Traces hold every configuration, so process and derivations are only run up to
+ * -trace-max tokens (default 100000). The sentential forms of a derivation add up to
+ * the square of its length, so derivations stop at -derivation-max tokens (default 10000).
+ * Each measurement runs the operation for -warmup ms, then for -time ms (at least once),
+ * and reports the median time per unit, the mean throughput, the bytes allocated per
+ * unit by the measuring thread and the number of garbage collections. With -forks n
+ * (default 1) each automaton is run in n child JVMs one after the other, so that what
+ * the JIT learned from one automaton does not carry over to the next; the column fork
+ * tells them apart. -forks 0 runs everything in this JVM.
+ * Date created: 10/18/26
+ */
+public class Benchmark {
+
+    private interface Operation {
+        /**
+         * @return a value depending on the work done, so that it is not optimized away
+         */
+        Object run() throws Exception;
+    }
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+    private static final String ROW = "%4d %-9s %-12s %-7s %10d %8s %8d %12.1f %14.0f %12.1f %6d%n";
+
+    private final long warmupNanos;
+    private final long timeNanos;
+    private final PrintStream out;
+    private final int fork; // number of the child JVM, 0 if not forked
+    // written with the result of every operation, see consume()
+    private volatile int sink;
+
+    public Benchmark(long warmupNanos, long timeNanos, PrintStream out) {
+        this(warmupNanos, timeNanos, out, 0);
+    }
+
+    private Benchmark(long warmupNanos, long timeNanos, PrintStream out, int fork) {
+        this.warmupNanos = warmupNanos;
+        this.timeNanos = timeNanos;
+        this.out = out;
+        this.fork = fork;
+    }
+
+    /**
+     * Keeps the result of an operation alive: a volatile write cannot be dropped, so
+     * the JIT has to compute the result and cannot hoist the operation out of the loop
+     * @param result
+     */
+    private void consume(Object result) {
+        sink = sink * 31 + System.identityHashCode(result);
+    }
+
+    private static long allocatedBytes() {
+        return THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    private static long collections() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(collector.getCollectionCount(), 0);
+        }
+        return count;
+    }
+
+    /**
+     * Runs an operation repeatedly and prints a line of results
+     * @param automaton
+     * @param benchmark
+     * @param shape
+     * @param depth largest stack depth of a run, 0 if it does not apply
+     * @param units units of work of one run of the operation, e.g. input tokens
+     * @param operation
+     */
+    private void measure(String automaton, String benchmark, String shape, int depth,
+                         long units, Operation operation) throws Exception {
+        long end = System.nanoTime() + warmupNanos;
+        do {
+            consume(operation.run());
+        } while (System.nanoTime() - end < 0);
+
+        Histogram times = new Histogram();
+        long gcBefore = collections();
+        long bytesBefore = allocatedBytes();
+        long begin = System.nanoTime();
+        end = begin + timeNanos;
+        long now;
+        do {
+            long start = System.nanoTime();
+            consume(operation.run());
+            now = System.nanoTime();
+            times.record(now - start);
+        } while (now - end < 0);
+        long bytes = allocatedBytes() - bytesBefore;
+        long gcs = collections() - gcBefore;
+
+        long ops = times.count();
+        double totalUnits = (double) ops * units;
+        out.printf(ROW, fork, automaton, benchmark, shape, units,
+                depth == 0 ? "-" : Integer.toString(depth), ops,
+                (double) times.percentile(0.5) / units,
+                totalUnits * 1e9 / (now - begin), bytes / totalUnits, gcs);
+        out.flush();
+    }
+
+    /**
+     * @param name
+     * @param shape "flat" or "nested"
+     * @param size number of tokens, at least 4
+     * @return an input of about size tokens that the automaton accepts
+     */
+    static List<TerminalToken> input(DPDA pda, String name, String shape, int size)
+            throws InvalidSymbolException {
+        List<TerminalToken> input = new ArrayList<>(size);
+        boolean nested = shape.equals("nested");
+        if (name.equals("test3")) {
+            TerminalToken z = pda.terminal("z");
+            if (nested) {
+                nest(pda, input, z, (size - 2) / 2);
+            } else {
+                TerminalToken[] operators = pda.terminals(new String[] {"+", "*", "-", "/"})
+                        .toArray(new TerminalToken[0]);
+                TerminalToken[] operands = {z, pda.terminal("y")};
+                input.add(z);
+                for (int k = 1; k < (size - 1) / 2; k++) {
+                    input.add(operators[k % operators.length]);
+                    input.add(operands[k % operands.length]);
+                }
+            }
+        } else if (name.equals("test1")) {
+            TerminalToken a = pda.terminal("a");
+            TerminalToken b = pda.terminal("b");
+            int pairs = (size - 1) / 2;
+            for (int k = 0; k < pairs; k++) {
+                input.add(a);
+                if (!nested) {
+                    input.add(b);
+                }
+            }
+            for (int k = 0; nested && k < pairs; k++) {
+                input.add(b);
+            }
+        } else {
+            TerminalToken n = pda.terminal("n");
+            if (nested) {
+                nest(pda, input, n, (size - 2) / 2);
+            } else {
+                TerminalToken[] operators = {pda.terminal("+"), pda.terminal("*")};
+                input.add(n);
+                for (int k = 1; k < (size - 1) / 2; k++) {
+                    input.add(operators[k % operators.length]);
+                    input.add(n);
+                }
+            }
+        }
+        input.add(pda.terminal("$"));
+        return input;
+    }
+
+    /**
+     * Adds the operand enclosed in depth pairs of parentheses to the input
+     */
+    private static void nest(DPDA pda, List<TerminalToken> input, TerminalToken operand,
+                             int depth) throws InvalidSymbolException {
+        TerminalToken open = pda.terminal("(");
+        TerminalToken close = pda.terminal(")");
+        for (int k = 0; k < depth; k++) {
+            input.add(open);
+        }
+        input.add(operand);
+        for (int k = 0; k < depth; k++) {
+            input.add(close);
+        }
+    }
+
+    /**
+     * Runs all benchmarks of one automaton
+     * @param name
+     * @param sizes
+     * @param traceMax largest input for process
+     * @param derivationMax largest input for derivations
+     */
+    public void run(String name, int[] sizes, int traceMax, int derivationMax) throws Exception {
+        DPDA pda = BatchValidator.loadAutomaton(name);
+        measure(name, "build", "-", 0, pda.transitions().size(),
+                () -> BatchValidator.loadAutomaton(name));
+        Path snapshot = Files.createTempFile(name, ".dpda");
+        try {
+            pda.save(snapshot);
+            measure(name, "load", "-", 0, pda.transitions().size(), () -> DPDA.load(snapshot));
+        } finally {
+            Files.delete(snapshot);
+        }
+        GeneratedDPDA generated = pda.generateCode();
+        for (String shape : new String[] {"flat", "nested"}) {
+            for (int size : sizes) {
+                List<TerminalToken> input = input(pda, name, shape, size);
+                ParseSession session = pda.newSession();
+                session.feed(input);
+                if (!session.finish().accepted) {
+                    throw new IllegalStateException(name + " does not accept its " + shape
+                            + " input of " + input.size() + " tokens");
+                }
+                int depth = session.maxStackDepth();
+                measure(name, "accepts", shape, depth, input.size(), () -> pda.accepts(input));
+                measure(name, "generated", shape, depth, input.size(),
+                        () -> generated.accepts(input));
+                if (input.size() > traceMax) {
+                    continue;
+                }
+                measure(name, "process", shape, depth, input.size(), () -> pda.process(input));
+                if (input.size() > derivationMax) {
+                    continue;
+                }
+                measure(name, "derivations", shape, depth, input.size(), () -> {
+                    PrintStream stdout = System.out;
+                    System.setOut(DISCARD);
+                    try {
+                        pda.printDerivations(pda.process(input));
+                    } finally {
+                        System.setOut(stdout);
+                    }
+                    return input;
+                });
+            }
+        }
+    }
+
+    /**
+     * Runs the benchmarks of one automaton in a child JVM with the same class path
+     * and passes its lines through to this one's output
+     * @param options the options of main() without -forks
+     * @param name
+     * @param fork number of the child, from 1
+     */
+    private static void fork(List<String> options, String name, int fork) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Benchmark.class.getName());
+        command.addAll(options);
+        command.add("-fork");
+        command.add(Integer.toString(fork));
+        command.add(name);
+        Process process = new ProcessBuilder(command).inheritIO().start();
+        int status = process.waitFor();
+        if (status != 0) {
+            throw new IllegalStateException("Fork " + fork + " of " + name + " exited with "
+                    + status);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = {10, 1_000, 100_000, 10_000_000};
+        int traceMax = 100_000;
+        int derivationMax = 10_000;
+        long timeMillis = 1000;
+        long warmupMillis = 1000;
+        int forks = 1;
+        int fork = 0; // set in a child JVM, which runs its automaton itself
+        List<String> options = new ArrayList<>();
+        int k = 0;
+        while (k < args.length && args[k].startsWith("-")) {
+            if (args[k].equals("-sizes") && k + 1 < args.length) {
+                sizes = Arrays.stream(args[k + 1].split(",")).mapToInt(Integer::parseInt).toArray();
+            } else if (args[k].equals("-trace-max") && k + 1 < args.length) {
+                traceMax = Integer.parseInt(args[k + 1]);
+            } else if (args[k].equals("-derivation-max") && k + 1 < args.length) {
+                derivationMax = Integer.parseInt(args[k + 1]);
+            } else if (args[k].equals("-time") && k + 1 < args.length) {
+                timeMillis = Long.parseLong(args[k + 1]);
+            } else if (args[k].equals("-warmup") && k + 1 < args.length) {
+                warmupMillis = Long.parseLong(args[k + 1]);
+            } else if (args[k].equals("-forks") && k + 1 < args.length) {
+                forks = Integer.parseInt(args[k + 1]);
+            } else if (args[k].equals("-fork") && k + 1 < args.length) {
+                fork = Integer.parseInt(args[k + 1]);
+            } else {
+                throw new IllegalArgumentException("Unknown option " + args[k]);
+            }
+            if (!args[k].equals("-forks") && !args[k].equals("-fork")) {
+                options.add(args[k]);
+                options.add(args[k + 1]);
+            }
+            k += 2;
+        }
+        for (int size : sizes) {
+            if (size < 4) {
+                throw new IllegalArgumentException("Input size " + size + " is less than 4");
+            }
+        }
+        List<String> automata = k < args.length ? Arrays.asList(args).subList(k, args.length)
+                : Arrays.asList("test1", "test2", "test2-lr", "test3");
+        if (fork == 0) {
+            System.out.printf("%4s %-9s %-12s %-7s %10s %8s %8s %12s %14s %12s %6s%n", "fork",
+                    "automaton", "benchmark", "shape", "units", "depth", "ops", "ns/unit p50",
+                    "units/s", "bytes/unit", "gcs");
+            System.out.flush();
+        }
+        if (fork == 0 && forks > 0) {
+            for (String name : automata) {
+                for (int f = 1; f <= forks; f++) {
+                    fork(options, name, f);
+                }
+            }
+            return;
+        }
+        Benchmark benchmark = new Benchmark(warmupMillis * 1_000_000L, timeMillis * 1_000_000L,
+                System.out, fork);
+        for (String name : automata) {
+            benchmark.run(name, sizes, traceMax, derivationMax);
+        }
+    }
+}
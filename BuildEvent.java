@@ -0,0 +1,35 @@
+package edu.njit.cs314;
+
+import jdk.jfr.*;
+
+/**
+ * JFR event for building a DPDA, committed by compile(). The event lasts as long as
+ * laying out the transition tables; the time spent in addTransition() before, checking
+ * and adding transitions, is added up while the event is enabled and reported as
+ * addTime. Time between the calls, e.g. until the first run compiles the DPDA, is in
+ * neither.
+ * Date created: 10/18/26
+ */
+@Name("edu.njit.cs314.Build")
+@Label("DPDA Build")
+@Category("DPDA")
+@Description("Compilation of a DPDA into transition tables, with the time spent adding "
+        + "its transitions")
+class BuildEvent extends Event {
+
+    static final EventType TYPE = EventType.getEventType(BuildEvent.class);
+
+    @Label("States")
+    int states;
+
+    @Label("Transitions")
+    int transitions;
+
+    @Label("Symbols")
+    int symbols;
+
+    @Label("Add Time")
+    @Description("Time spent checking and adding transitions while the event was enabled")
+    @Timespan(Timespan.NANOSECONDS)
+    long addTime;
+}
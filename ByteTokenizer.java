@@ -0,0 +1,167 @@
+package edu.njit.cs314;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Splits bytes into the terminals of a compiled DPDA and hands their symbol ids
+ * straight to a ParseSession, without creating strings or TerminalTokens.
+ * Terminals are matched longest first, so multi-character terminals work, and
+ * whitespace between terminals is skipped unless it is itself a terminal.
+ * A tokenizer holds no state of its own and can be shared between threads.
+ * Tokenizers are created by DPDA.newTokenizer().
+ * Date created: 10/18/26
+ */
+public class ByteTokenizer {
+
+    // returned by next() when no bytes are left
+    public static final int END = -3;
+    // files are mapped in windows of this size; a mapping cannot exceed 2GB
+    private static final long WINDOW = 1L << 30;
+
+    // trie over the UTF-8 bytes of the terminals: trie[node*256 + byte] is the child, 0 if none
+    private final int[] trie;
+    // symbol id of the terminal ending at a node or SymbolTable.NONE
+    private final int[] terminalAt;
+    private final boolean[] skip = new boolean[256];
+    private final int maxLength;
+
+    ByteTokenizer(TransitionTable table) {
+        SymbolTable symbols = table.symbols();
+        byte[][] terminals = new byte[table.nInputs()][];
+        int nNodes = 1;
+        int longest = 0;
+        for (int id = 1; id < terminals.length; id++) {
+            terminals[id] = symbols.symbol(id).value.getBytes(StandardCharsets.UTF_8);
+            nNodes += terminals[id].length;
+            longest = Math.max(longest, terminals[id].length);
+        }
+        maxLength = longest;
+        int[] children = new int[nNodes * 256];
+        int[] ids = new int[nNodes];
+        Arrays.fill(ids, SymbolTable.NONE);
+        int used = 1;
+        for (int id = 1; id < terminals.length; id++) {
+            int node = 0;
+            for (byte b : terminals[id]) {
+                int slot = node * 256 + (b & 0xff);
+                if (children[slot] == 0) {
+                    children[slot] = used++;
+                }
+                node = children[slot];
+            }
+            ids[node] = id;
+        }
+        trie = Arrays.copyOf(children, used * 256);
+        terminalAt = Arrays.copyOf(ids, used);
+        for (byte b : new byte[] {' ', '\t', '\r', '\n'}) {
+            skip[b] = children[b] == 0;
+        }
+    }
+
+    /**
+     * Advances the position of the buffer past whitespace that is not a terminal
+     * @param buffer
+     */
+    private void skipWhitespace(ByteBuffer buffer) {
+        int pos = buffer.position();
+        int limit = buffer.limit();
+        while (pos < limit && skip[buffer.get(pos) & 0xff]) {
+            pos++;
+        }
+        buffer.position(pos);
+    }
+
+    /**
+     * Reads the next terminal from the buffer, advancing its position past it
+     * @param buffer
+     * @return symbol id of the terminal, SymbolTable.NONE if the bytes at the position
+     * do not start a terminal (one byte is skipped) or END if only whitespace is left
+     */
+    public int next(ByteBuffer buffer) {
+        skipWhitespace(buffer);
+        int pos = buffer.position();
+        int limit = buffer.limit();
+        if (pos == limit) {
+            return END;
+        }
+        int node = 0;
+        int id = SymbolTable.NONE;
+        int end = pos + 1;
+        for (int p = pos; p < limit; p++) {
+            node = trie[node * 256 + (buffer.get(p) & 0xff)];
+            if (node == 0) {
+                break;
+            }
+            if (terminalAt[node] != SymbolTable.NONE) {
+                id = terminalAt[node];
+                end = p + 1;
+            }
+        }
+        buffer.position(end);
+        return id;
+    }
+
+    /**
+     * Feeds all terminals from the position to the limit of the buffer into the session
+     * @param buffer
+     * @param session
+     * @return false if the session rejected its input
+     */
+    public boolean feed(ByteBuffer buffer, ParseSession session) {
+        return feed(buffer, session, true);
+    }
+
+    /**
+     * Feeds terminals from the buffer into the session. Unless the buffer holds the
+     * end of the input, stops when a terminal could run past the limit, leaving the
+     * position at the first byte not read. The whitespace before a terminal is skipped
+     * first, so that the terminal is matched against maxLength bytes from its start
+     */
+    private boolean feed(ByteBuffer buffer, ParseSession session, boolean last) {
+        while (true) {
+            skipWhitespace(buffer);
+            if (!last && buffer.remaining() < maxLength) {
+                break;
+            }
+            int id = next(buffer);
+            if (id == END) {
+                break;
+            }
+            if (!session.feedSymbol(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Memory-maps the file window by window and feeds all of its terminals into the session
+     * @param file
+     * @param session
+     * @return false if the session rejected its input
+     * @throws IOException
+     */
+    public boolean feed(Path file, ParseSession session) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long pos = 0;
+            while (pos < size) {
+                long length = Math.min(WINDOW, size - pos);
+                boolean last = pos + length == size;
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, pos, length);
+                if (!feed(buffer, session, last)) {
+                    return false;
+                }
+                pos += last ? length : buffer.position();
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,73 @@
+package edu.njit.cs314;
+
+import java.util.List;
+
+/**
+ * A transition of a compiled DPDA with its stack top and replacement translated
+ * to symbol ids. Index 0 of pop and push is the top of the stack, as in
+ * DPDA.Transition. A macro transition stands for a chain of steps that always
+ * follow each other; it has the combined effect on the stack and the rules of
+ * all steps in order, and source is the transition of its first step.
+ * Date created: 10/18/26
+ */
+class CompiledTransition {
+
+    public final DPDA.Transition source;
+    public final int currState;
+    public final int input;
+    public final int[] pop;
+    public final int nextState;
+    public final int[] push;
+    public final List<DPDA.Rule> rulesForReduction;
+    public final int steps; // number of steps, more than 1 for a macro transition
+    public final int index; // position among the transitions of the compiled DPDA, -1 for a macro
+    public final int minStackSize; // stack size a macro transition needs before its first step
+
+    public CompiledTransition(DPDA.Transition source, int index, int input, int[] pop, int[] push) {
+        this.source = source;
+        this.index = index;
+        this.currState = source.currState;
+        this.input = input;
+        this.pop = pop;
+        this.nextState = source.nextState;
+        this.push = push;
+        this.rulesForReduction = source.rulesForReduction;
+        this.steps = 1;
+        this.minStackSize = 0;
+    }
+
+    /**
+     * Creates a macro transition that starts with the first transition
+     * @param minStackSize stack size below which the steps after the first are not
+     *                     certain to be made
+     */
+    public CompiledTransition(CompiledTransition first, int nextState, int[] push,
+                              List<DPDA.Rule> rulesForReduction, int steps, int minStackSize) {
+        this.source = first.source;
+        this.index = -1;
+        this.currState = first.currState;
+        this.input = first.input;
+        this.pop = first.pop;
+        this.nextState = nextState;
+        this.push = push;
+        this.rulesForReduction = rulesForReduction;
+        this.steps = steps;
+        this.minStackSize = minStackSize;
+    }
+
+    /**
+     * Pops the stack top of the transition and pushes its replacement
+     * @param stack
+     */
+    public void apply(IntStack stack) {
+        stack.pop(pop.length);
+        stack.pushAll(push);
+    }
+
+    public String toString() {
+        if (steps > 1) {
+            return source + " and " + (steps - 1) + " more steps to state " + nextState;
+        }
+        return source.toString();
+    }
+}
@@ -1,6 +1,12 @@
 package edu.njit.cs314;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Author: Ravi Varadarajan
@@ -8,7 +14,7 @@ import java.util.*;
  */
 public class DPDA {
 
-    private static class Rule {
+    public static class Rule {
         public final VariableToken lhs;
         public final List<GrammarToken> rhs;
 
@@ -18,7 +24,7 @@ public class DPDA {
         }
     }
 
-    private static class Transition {
+    static class Transition {
         public final int currState;
         public final TerminalToken inputSymbol;
         public final List<StackToken> stackTop; // first symbol on top of the stack
@@ -71,19 +77,25 @@ public class DPDA {
 
     private class Configuration {
         public final int currState;
-        public final List<StackToken> fromStackState;
-        public List<TerminalToken> remainingInput;
+        public final PersistentStack fromStackState;
+        public final List<TerminalToken> input;
+        public final int inputIndex; // next input symbol to read
         public final Transition transition;
 
-        public Configuration(int currState, List<TerminalToken> remainingInput,
-                             List<StackToken> fromStackState,
+        public Configuration(int currState, List<TerminalToken> input, int inputIndex,
+                             PersistentStack fromStackState,
                              Transition transition) {
             this.currState = currState;
-            this.remainingInput = remainingInput;
+            this.input = input;
+            this.inputIndex = inputIndex;
             this.fromStackState = fromStackState;
             this.transition = transition;
         }
 
+        public List<TerminalToken> remainingInput() {
+            return input.subList(inputIndex, input.size());
+        }
+
         public boolean isAccepting() {
             if (acceptStates.contains(transition.nextState)) {
                 return true;
@@ -97,19 +109,19 @@ public class DPDA {
             builder.append("(");
             builder.append(currState);
             builder.append(",");
-            if (remainingInput.isEmpty()) {
+            // symbol read by the transition
+            if (transition.inputSymbol == TerminalToken.EPSILON || inputIndex >= input.size()) {
                 builder.append("epsilon");
             } else {
-                for (TerminalToken token : remainingInput) {
-                    builder.append(token);
-                }
+                builder.append(input.get(inputIndex));
             }
             builder.append(",");
             if (fromStackState.isEmpty()) {
                 builder.append("epsilon");
             } else {
-                for (StackToken token : fromStackState) {
-                    builder.append(token);
+                SymbolTable symbols = table.symbols();
+                for (PersistentStack s = fromStackState; !s.isEmpty(); s = s.below) {
+                    builder.append(symbols.symbol(s.top));
                 }
             }
             builder.append(")");
@@ -117,16 +129,19 @@ public class DPDA {
         }
     }
 
-    private final Set<TerminalToken> terminalTokens = new HashSet<>();
-    private final Set<VariableToken> variableTokens = new HashSet<>();
-    private Stack<StackToken> stack = new Stack<>();
-    public static List<StackToken> EPSILON_STACK = new ArrayList<>();
+    public static final List<StackToken> EPSILON_STACK = Collections.emptyList();
 
 
     private final int nStates;
     private final int startState;
     private final Set<Integer> acceptStates;
+    private final SymbolTable symbols;
+    private final DeterminismIndex determinism;
     private Map<Integer,List<Transition>> transitionMap = new HashMap<>();
+    private volatile TransitionTable table = null;
+    private volatile DPDAMetrics metrics = null;
+    // time spent in addTransition() while BuildEvent is enabled, reported when compiled
+    private long addTime;
 
     public DPDA(int nStates, int startState,
                     Set<String> terminals,
@@ -135,33 +150,70 @@ public class DPDA {
         this.nStates = nStates;
         this.acceptStates = acceptStates;
         this.startState = startState;
-        for (String terminal : terminals) {
-            terminalTokens.add(new TerminalToken(terminal));
+        this.symbols = new SymbolTable(terminals, variables, nStates);
+        this.determinism = new DeterminismIndex(symbols);
+    }
+
+    /**
+     * @param value
+     * @return the canonical token of a terminal of this DPDA
+     * @throws InvalidSymbolException if value is not a terminal of this DPDA
+     */
+    public TerminalToken terminal(String value) throws InvalidSymbolException {
+        TerminalToken token = symbols.terminal(value);
+        if (token == null) {
+            throw new InvalidSymbolException("Symbol " + value + " is not valid");
         }
-        for (String variable : variables) {
-            variableTokens.add(new VariableToken(variable));
+        return token;
+    }
+
+    /**
+     * @param value
+     * @return the canonical token of a variable of this DPDA
+     * @throws InvalidSymbolException if value is not a variable of this DPDA
+     */
+    public VariableToken variable(String value) throws InvalidSymbolException {
+        VariableToken token = symbols.variable(value);
+        if (token == null) {
+            throw new InvalidSymbolException("Variable symbol " + value + " is not valid");
         }
+        return token;
     }
 
     /**
-     * Matches two stack tops given as lists (First symbol in the list is top of stack)
-     * @param stackTop1
-     * @param stackTop2
-     * @return true if one list is a sublist of another that starts from the beginning
+     * @param state
+     * @return the canonical token of a state of this DPDA
+     * @throws InvalidStateException if state is not a state of this DPDA
      */
-    private boolean matchStackTop(List<StackToken> stackTop1,
-                                  List<StackToken> stackTop2) {
-        /** TO DO **/
-        Iterator<StackToken> iter1 = stackTop1.iterator();
-        Iterator<StackToken> iter2 = stackTop2.iterator();
-        List<StackToken> matchedStackTop = new ArrayList<>();
-        while (iter1.hasNext() && iter2.hasNext()) {
-            StackToken token = iter2.next();
-            if (!iter1.next().equals(token)) {
-                return false;
-            }
+    public StateToken state(int state) throws InvalidStateException {
+        if (state < 0 || state >= nStates) {
+            throw new InvalidStateException("State " + state + " is not valid");
+        }
+        return symbols.state(state);
+    }
+
+    /**
+     * @param terminal
+     * @return the canonical lookahead token for a terminal of this DPDA
+     * @throws InvalidSymbolException if terminal is not a terminal of this DPDA
+     */
+    public LookAheadToken lookAhead(TerminalToken terminal) throws InvalidSymbolException {
+        return symbols.lookAhead(terminal(terminal.value));
+    }
+
+    /**
+     * Like toTerminalTokens() but uses the canonical tokens of this DPDA. Values which
+     * are not terminals of this DPDA get tokens of their own, which the DPDA rejects
+     * @param vals
+     * @return the tokens
+     */
+    public List<TerminalToken> terminals(String [] vals) {
+        List<TerminalToken> lst = new ArrayList<>();
+        for (String val : vals) {
+            TerminalToken token = symbols.terminal(val);
+            lst.add(token != null ? token : toTerminal(val));
         }
-        return true;
+        return lst;
     }
 
     /**
@@ -177,6 +229,12 @@ public class DPDA {
                               int nextState, List<StackToken> stackTopReplacement,
                               List<Rule> ruleForReduction)
             throws InvalidStateException, InvalidSymbolException {
+        boolean timed = BuildEvent.TYPE.isEnabled();
+        long begin = timed ? System.nanoTime() : 0;
+        if (table != null) {
+            throw new IllegalStateException("Cannot add transition for state " + currState
+                    + " after the DPDA has been compiled");
+        }
         // Check if all tokens and states in the inputs to the function are valid, otherwise
         // throw exception
         if (currState < 0 || currState >= nStates) {
@@ -185,16 +243,16 @@ public class DPDA {
         if (nextState < 0 || nextState >= nStates) {
             throw new InvalidStateException("State " + nextState + " is not valid");
         }
-        if (inputSymbol != TerminalToken.EPSILON && !terminalTokens.contains(inputSymbol)) {
+        if (inputSymbol != TerminalToken.EPSILON && !symbols.isTerminal(symbols.id(inputSymbol))) {
             throw new InvalidSymbolException("Symbol " + inputSymbol + " is not valid");
         }
         for (StackToken token : stackTop) {
             if (token instanceof TerminalToken) {
-                if (!terminalTokens.contains(token)) {
+                if (!symbols.isTerminal(symbols.id(token))) {
                     throw new InvalidSymbolException("Input symbol " + token + " is not valid");
                 }
             } else if (token instanceof  VariableToken) {
-                if (!variableTokens.contains(token)) {
+                if (!symbols.isVariable(symbols.id(token))) {
                     throw new InvalidSymbolException("Variable symbol " + token + " is not valid");
                 }
             } else if (token instanceof StateToken) {
@@ -207,157 +265,469 @@ public class DPDA {
         }
         for (StackToken token : stackTopReplacement) {
             if (token instanceof TerminalToken) {
-                if (!terminalTokens.contains((TerminalToken) token)) {
+                if (!symbols.isTerminal(symbols.id(token))) {
                     throw new InvalidSymbolException("Symbol " + token + " is not valid");
                 }
             } else if (token instanceof  VariableToken) {
-                if (!variableTokens.contains(token)) {
+                if (!symbols.isVariable(symbols.id(token))) {
+                    throw new InvalidSymbolException("Symbol " + token + " is not valid");
+                }
+            }
+        }
+        // give states and lookaheads ids now, compiling only looks them up
+        for (List<StackToken> tokens : Arrays.asList(stackTop, stackTopReplacement)) {
+            for (StackToken token : tokens) {
+                if (symbols.intern(token) == SymbolTable.NONE) {
                     throw new InvalidSymbolException("Symbol " + token + " is not valid");
                 }
             }
         }
         // verify if it satisfies properties of DPDA, else throw exception
+        Transition transition = new Transition(currState, inputSymbol, stackTop, nextState,
+                stackTopReplacement, ruleForReduction);
+        List<String> conflicts = determinism.conflicts(transition);
+        if (!conflicts.isEmpty()) {
+            throw new IllegalArgumentException(String.join("\n", conflicts));
+        }
         List<Transition> transitions = transitionMap.get(currState);
         if (transitions == null) {
             transitions = new ArrayList<Transition>();
             transitionMap.put(currState, transitions);
         }
-        for (Transition transition : transitions) {
-            if (!transition.stackTop.equals(EPSILON_STACK) && !stackTop.equals(EPSILON_STACK) &&
-                    matchStackTop(transition.stackTop, stackTop)) {
-                // epsilon stack transition
-                if (transition.inputSymbol == TerminalToken.EPSILON) {
-                    throw new IllegalArgumentException("Epsilon input/epsilon stack transition already exists for state "
-                            + currState + ":" + transition);
-                }
-                if (inputSymbol == TerminalToken.EPSILON) {
-                    throw new IllegalArgumentException("Cannot add epsilon input/epsilon transition for state "
-                            + currState + " when transition for " + transition.inputSymbol
-                            + " already exists: " + transition);
-                }
-                if (transition.inputSymbol.equals(inputSymbol)) {
-                    throw new IllegalArgumentException("Cannot add epsilon stack transition for state "
-                            + currState + " when epsilon transition for " + transition.inputSymbol
-                            + " already exists: " + transition);
-                }
-            }
+        transitions.add(transition);
+        determinism.add(transition);
+        if (timed) {
+            addTime += System.nanoTime() - begin;
         }
-        transitions.add(new Transition(currState, inputSymbol, stackTop, nextState,
-                stackTopReplacement, ruleForReduction));
     }
 
-    private List<StackToken> copyStack() {
-        List<StackToken> stackTop = new ArrayList<>();
-        Iterator<StackToken> iter = stack.iterator();
-        while (iter.hasNext()) {
-            stackTop.add(0,iter.next());
+    /**
+     * Adds a transition that was checked when it was first added, e.g. by addTransition()
+     * before the DPDA was saved. Used when loading a snapshot
+     * @param transition
+     */
+    void addValidatedTransition(Transition transition) {
+        transitionMap.computeIfAbsent(transition.currState, state -> new ArrayList<>())
+                .add(transition);
+    }
+
+    SymbolTable symbols() {
+        return symbols;
+    }
+
+    /**
+     * Turns on metrics for the runs of this DPDA that start from now on, see DPDAMetrics.
+     * Compiles the DPDA
+     * @return the metrics, the same ones if they are already on
+     */
+    public synchronized DPDAMetrics enableMetrics() {
+        compile();
+        if (metrics == null) {
+            metrics = new DPDAMetrics(table);
         }
-        return stackTop;
+        return metrics;
     }
 
     /**
-     * Attempts to find a matching transition from current state, input symbol
-     * which may be epsilon and a boolean to indicate if epsilon for  stack needs to be matched
-     * in transition
-     * @param currState
-     * @param inputSymbol
-     * @param epsilonStack
-     * @return
+     * Turns off metrics for the runs that start from now on. Runs which have started
+     * keep recording into the metrics they started with
      */
-    private Transition match(int currState, TerminalToken inputSymbol, boolean epsilonStack) {
-        List<Transition> transitions = transitionMap.get(currState);
-        List<StackToken> stackTop = copyStack();
-        for (Transition transition : transitions) {
-             /** TODO **/
-            if (transition.inputSymbol.equals(inputSymbol)) {
-                if (epsilonStack) {
-                    if (transition.stackTop.isEmpty()) {
-                        return transition;
-                    }
-                } else if (matchStackTop(stackTop,transition.stackTop)) {
-                    return transition;
-                }
+    public synchronized void disableMetrics() {
+        metrics = null;
+    }
+
+    /**
+     * @return the metrics of this DPDA, or null if they are off
+     */
+    public DPDAMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Writes a snapshot of the DPDA, which load() turns back into a compiled DPDA
+     * without checking the transitions again
+     * @param file
+     */
+    public void save(Path file) throws IOException {
+        compile();
+        DPDASnapshot.write(nStates, startState, acceptStates, compiled(), file);
+    }
+
+    /**
+     * @return all transitions in the order they are compiled
+     */
+    List<Transition> transitions() {
+        List<Transition> transitions = new ArrayList<>();
+        for (List<Transition> stateTransitions : transitionMap.values()) {
+            transitions.addAll(stateTransitions);
+        }
+        return transitions;
+    }
+
+    /**
+     * Builds a smaller DPDA that accepts the same inputs: transitions and states that
+     * no run can reach are removed, states from which no accept state can be reached
+     * lose their transitions and equivalent states are merged. This DPDA is left as it is
+     * @return the minimized DPDA, compiled, and a report of what was removed
+     */
+    public Minimization minimize() {
+        compile();
+        return Minimization.of(nStates, startState, acceptStates, symbols, transitions());
+    }
+
+    /**
+     * Loads a DPDA saved by save(). The file is memory-mapped and read straight into
+     * the tables of the DPDA, which is returned compiled
+     * @param file
+     * @return the DPDA
+     * @throws IOException if the file is not a valid snapshot
+     */
+    public static DPDA load(Path file) throws IOException {
+        return DPDASnapshot.read(file);
+    }
+
+    /**
+     * Freezes the DPDA into dense transition tables. No transitions can be added afterwards
+     * and the DPDA can be shared between threads, since all state of a run is kept by the run.
+     * Every method that runs, saves, generates code for or minimizes the DPDA calls it
+     * first if it has not been called before
+     */
+    public void compile() {
+        compiled();
+    }
+
+    /**
+     * @return the dense transition tables, built first if the DPDA is not compiled yet.
+     * Only the calls that find it not compiled take the lock of the DPDA, so runs on many
+     * threads do not wait for each other
+     */
+    private TransitionTable compiled() {
+        TransitionTable compiled = table;
+        if (compiled != null) {
+            return compiled;
+        }
+        synchronized (this) {
+            buildTable();
+            return table;
+        }
+    }
+
+    /**
+     * Compiles the DPDA with tables read from a snapshot instead of building them
+     * @param loaded tables for the transitions added so far
+     */
+    synchronized void compile(TransitionTable loaded) {
+        if (table != null) {
+            throw new IllegalStateException("DPDA is already compiled");
+        }
+        table = loaded;
+    }
+
+    private void buildTable() {
+        if (table == null) {
+            BuildEvent event = new BuildEvent();
+            event.begin();
+            table = new TransitionTable(nStates, symbols, acceptStates, transitionMap);
+            event.end();
+            if (event.shouldCommit()) {
+                event.states = nStates;
+                event.transitions = table.nTransitions();
+                event.symbols = symbols.size();
+                event.addTime = addTime;
+                event.commit();
             }
         }
-        return null;
     }
 
     /**
      * Uses the transition to pop from stack matching symbols from transition.stackTop
      * and then pushes the symbols stackTopReplacement on to stack
      * @param transition
+     * @param stack
      */
-    private void actOnStack(Transition transition) {
-        /** TODO **/
-        if (transition != null) {
-            List<StackToken> stackTop = transition.stackTop;
-            // pop
-            for (StackToken token : stackTop) {
-                StackToken stackToken = stack.peek();
-                if (stackToken == null || !stackToken.equals(token)) {
-                    return;
-                }
-                stack.pop();
-            }
-            // push
-            for (int i=transition.stackTopReplacement.size()-1; i >= 0; i--) {
-                stack.push(transition.stackTopReplacement.get(i));
-            }
+    private void actOnStack(CompiledTransition transition, IntStack stack) {
+        if (transition != null && table.matchesTop(transition.pop, stack)) {
+            transition.apply(stack);
         }
     }
 
+    /**
+     * Finds the transition for the next step, trying in order epsilon input/epsilon stack,
+     * input symbol/epsilon stack, epsilon input/stack top and input symbol/stack top
+     * @param currState
+     * @param inputId id of next input symbol or SymbolTable.NONE at end of input
+     * @param stack
+     * @return the transition or null if the input is rejected
+     */
+    private CompiledTransition nextTransition(int currState, int inputId, IntStack stack) {
+        return table.next(currState, inputId, stack);
+    }
+
     public List<Configuration> process(List<TerminalToken> input) {
-        stack.clear();
+        compile();
+        ParseEvent event = ParseEvent.beginIfEnabled();
+        IntStack stack = new IntStack();
+        // same contents as stack, kept so that configurations can share it
+        PersistentStack trace = PersistentStack.EMPTY;
         int i = 0;
         int currState = startState;
-        Transition transition =  null;
+        CompiledTransition transition =  null;
         List<Configuration> configurations = new ArrayList<> ();
-        TerminalToken inputToken = null;
         while (i < input.size() || stack.size() > 1) {
-            // check for epsilon stack/ epsilon input transition
-            inputToken = TerminalToken.EPSILON;
-            transition = match(currState, inputToken, true);
+            int inputId = i < input.size() ? table.inputId(input.get(i)) : SymbolTable.NONE;
+            transition = nextTransition(currState, inputId, stack);
             if (transition == null) {
-                // check for epsilon stack / input symbol transition
-                if (i < input.size()) {
-                    inputToken = input.get(i);
-                    transition = match(currState, inputToken, true);
-                } else {
-                    transition = null;
-                }
-                if (transition == null) {
-                    // match stack with epsilon input
-                    inputToken = TerminalToken.EPSILON;
-                    transition = match(currState, inputToken, false);
-                    if (transition == null) {
-                        if (i < input.size()) {
-                            inputToken = input.get(i);
-                            transition = match(currState, inputToken, false);
-                        } else{
-                            transition = null;
-                        }
-                        if (transition == null) {
-                            // reject input
-                            return configurations;
-                        }
-                    }
+                // reject input
+                recordMetrics(configurations, trace, currState,
+                        i < input.size() ? inputId : DPDAMetrics.END_OF_INPUT, false);
+                if (event != null) {
+                    event.finish(i, configurations.size(), RecognitionResult.Outcome.REJECTED,
+                            stack.maxSize(), true);
                 }
+                return configurations;
             }
-            List<TerminalToken> sl = Arrays.asList(inputToken);
-            configurations.add(new Configuration(currState, sl,copyStack(), transition));
-            if (inputToken != TerminalToken.EPSILON) {
+            configurations.add(new Configuration(currState, input, i, trace, transition.source));
+            if (transition.input != SymbolTable.EPSILON) {
                 i++;
             }
-            actOnStack(transition);
+            actOnStack(transition, stack);
+            trace = trace.apply(transition);
             currState = transition.nextState;
         }
-        if (configurations.get(configurations.size()-1).isAccepting()) {
-            configurations.add(new Configuration(currState, Arrays.asList(TerminalToken.EPSILON),
-                    copyStack(), transition));
+        boolean accepted = configurations.get(configurations.size()-1).isAccepting();
+        recordMetrics(configurations, trace, currState, DPDAMetrics.END_OF_INPUT, accepted);
+        if (event != null) {
+            event.finish(i, configurations.size(), accepted ? RecognitionResult.Outcome.ACCEPTED
+                    : RecognitionResult.Outcome.REJECTED, stack.maxSize(), true);
+        }
+        if (accepted) {
+            configurations.add(new Configuration(currState, input, input.size(),
+                    trace, transition.source));
         }
         return configurations;
     }
 
+    /**
+     * Records a run of process() from its trace, if metrics are on. Done after the run
+     * so that the loop of process() does not change with metrics
+     * @param configurations configurations before each step
+     * @param trace stack after the last step
+     * @param currState final state
+     * @param inputId input symbol that could not be read, see DPDAMetrics.Run.finish()
+     * @param accepted
+     */
+    private void recordMetrics(List<Configuration> configurations, PersistentStack trace,
+                               int currState, int inputId, boolean accepted) {
+        DPDAMetrics metrics = this.metrics;
+        if (metrics == null) {
+            return;
+        }
+        DPDAMetrics.Run run = metrics.newRun();
+        int steps = configurations.size();
+        for (int k = 0; k < steps; k++) {
+            Configuration config = configurations.get(k);
+            int depth = k + 1 < steps ? configurations.get(k + 1).fromStackState.size : trace.size;
+            run.step(metrics.indexOf(config.transition), config.currState,
+                    config.transition.inputSymbol == TerminalToken.EPSILON, depth);
+        }
+        run.finish(accepted ? RecognitionResult.Outcome.ACCEPTED
+                : RecognitionResult.Outcome.REJECTED, steps, currState, inputId);
+    }
+
+    /**
+     * Runs the DPDA on the input like process() but without recording configurations.
+     * The input is accepted if all of it is consumed and the DPDA ends in an accept state
+     * @param input
+     * @return whether the input was accepted, and where and after how many steps the run stopped
+     */
+    public RecognitionResult accepts(List<TerminalToken> input) {
+        return accepts(input, RunLimits.NONE);
+    }
+
+    /**
+     * Runs accepts() with limits on the steps, stack depth and time of the run
+     * @param input
+     * @param limits
+     * @return the result, whose outcome tells if the run was stopped by a limit
+     */
+    public RecognitionResult accepts(List<TerminalToken> input, RunLimits limits) {
+        return accepts(compiled(), input, limits);
+    }
+
+    /**
+     * Runs accepts() on the tables of the compiled DPDA, for batches that compile it once
+     */
+    private RecognitionResult accepts(TransitionTable table, List<TerminalToken> input,
+                                      RunLimits limits) {
+        ParseSession session = new ParseSession(table, startState, limits, null, metrics);
+        session.feed(input);
+        return session.finish();
+    }
+
+    /**
+     * Runs accepts() on a batch of inputs in parallel on the common ForkJoinPool
+     * @param inputs
+     * @return results in the iteration order of inputs
+     */
+    public List<RecognitionResult> acceptAll(Collection<List<TerminalToken>> inputs) {
+        return acceptAll(new ArrayList<>(inputs).parallelStream()).collect(Collectors.toList());
+    }
+
+    /**
+     * Runs accepts() on a batch of inputs in parallel on the given pool
+     * @param inputs
+     * @param pool
+     * @return results in the iteration order of inputs
+     */
+    public List<RecognitionResult> acceptAll(Collection<List<TerminalToken>> inputs,
+                                             ForkJoinPool pool) {
+        List<List<TerminalToken>> batch = new ArrayList<>(inputs);
+        return pool.submit(() -> acceptAll(batch.parallelStream()).collect(Collectors.toList())).join();
+    }
+
+    /**
+     * Maps a stream of inputs to the results of accepts(). The result stream is ordered,
+     * and parallel, if the input stream is
+     * @param inputs
+     * @return stream of results
+     */
+    public Stream<RecognitionResult> acceptAll(Stream<List<TerminalToken>> inputs) {
+        TransitionTable table = compiled();
+        return inputs.map(input -> accepts(table, input, RunLimits.NONE));
+    }
+
+    /**
+     * Starts a run of the DPDA that is given its input a token or a chunk at a time
+     * @return the new session
+     */
+    public ParseSession newSession() {
+        return newSession(RunLimits.NONE);
+    }
+
+    /**
+     * Starts a run of the DPDA that is stopped when it exceeds the limits
+     * @param limits
+     * @return the new session
+     */
+    public ParseSession newSession(RunLimits limits) {
+        return newSession(limits, false);
+    }
+
+    /**
+     * Starts a run of the DPDA that is stopped when it exceeds the limits
+     * @param limits
+     * @param buildTree if true the session builds a parse tree from the rules of the
+     *                  transitions it makes
+     * @return the new session
+     */
+    public ParseSession newSession(RunLimits limits, boolean buildTree) {
+        return newSession(limits, buildTree ? new ParseTree() : null);
+    }
+
+    /**
+     * Starts a run of the DPDA that reports its shifts and reductions as they happen
+     * @param limits
+     * @param listener receives the events, or null
+     * @return the new session
+     */
+    public ParseSession newSession(RunLimits limits, ParseListener listener) {
+        return new ParseSession(compiled(), startState, limits, listener, metrics);
+    }
+
+    /**
+     * Runs the DPDA on the input and reports its shifts and reductions, without
+     * recording configurations
+     * @param input
+     * @param listener
+     * @return whether the input was accepted
+     */
+    public RecognitionResult parse(List<TerminalToken> input, ParseListener listener) {
+        ParseSession session = newSession(RunLimits.NONE, listener);
+        session.feed(input);
+        return session.finish();
+    }
+
+    /**
+     * Runs the DPDA on the input and builds its parse tree on the way, without
+     * recording configurations
+     * @param input
+     * @return the parse tree or null if the input is not accepted
+     */
+    public ParseTree parse(List<TerminalToken> input) {
+        ParseSession session = newSession(RunLimits.NONE, true);
+        session.feed(input);
+        session.finish();
+        return session.parseTree();
+    }
+
+    /**
+     * Turns this DPDA into a Java class of its own, compiled at runtime and loaded as a
+     * hidden class, whose runs take the same steps as process(). Compiles the DPDA
+     * @return the generated DPDA
+     * @throws IllegalStateException if no Java compiler is available
+     */
+    public GeneratedDPDA generateCode() {
+        compile();
+        return GeneratedDPDA.generate(table, startState);
+    }
+
+    /**
+     * Runs the DPDA on a document that will be edited, keeping checkpoints of the run so
+     * that it can be checked again after each edit from near the edit. Compiles the DPDA
+     * @param input
+     * @param checkpointInterval number of steps between checkpoints
+     * @return the parser, holding the result of the run
+     */
+    public IncrementalParser parseIncrementally(List<TerminalToken> input, int checkpointInterval) {
+        compile();
+        return new IncrementalParser(table, startState, input, checkpointInterval);
+    }
+
+    /**
+     * Compares the generated code of the DPDA with process() on random inputs: both
+     * must take the same transitions and agree on acceptance
+     * @param inputs number of inputs
+     * @param maxLength longest input
+     * @param seed
+     * @return number of inputs on which they differ
+     */
+    public int checkGeneratedCode(int inputs, int maxLength, long seed) {
+        GeneratedDPDA generated = generateCode();
+        List<TerminalToken> alphabet = new ArrayList<>();
+        for (int id = 1; id < table.nInputs(); id++) {
+            alphabet.add((TerminalToken) symbols.symbol(id));
+        }
+        Random random = new Random(seed);
+        int mismatches = 0;
+        for (int k = 0; k < inputs; k++) {
+            List<TerminalToken> input = new ArrayList<>();
+            for (int length = 1 + random.nextInt(maxLength); input.size() < length; ) {
+                input.add(alphabet.get(random.nextInt(alphabet.size())));
+            }
+            List<Configuration> configs = process(input);
+            int[] steps = generated.steps(input);
+            // process() adds a last configuration only if it read all input and accepted
+            boolean accepted = configs.size() == steps.length + 1 && acceptString(configs);
+            boolean same = generated.accepts(input).accepted == accepted
+                    && configs.size() == steps.length + (accepted ? 1 : 0);
+            for (int i = 0; same && i < steps.length; i++) {
+                same = table.transition(steps[i]).source == configs.get(i).transition;
+            }
+            if (!same) {
+                mismatches++;
+            }
+        }
+        return mismatches;
+    }
+
+    /**
+     * @return a tokenizer that reads the terminals of this DPDA from bytes
+     */
+    public ByteTokenizer newTokenizer() {
+        compile();
+        return new ByteTokenizer(table);
+    }
+
     public static TerminalToken toTerminal(String val) {
         return new TerminalToken(val);
     }
@@ -402,78 +772,93 @@ public class DPDA {
         }
     }
 
-    private static List<GrammarToken> getRightMostReplacement(List<GrammarToken> derivation,
-                                                              Rule rule) {
-        int k=derivation.size()-1;
-        List<GrammarToken> newDerivation = new ArrayList<>();
-        while (k >= 0) {
-            if (!derivation.get(k).equals(rule.lhs)) {
-                newDerivation.add(0,derivation.get(k));
-                k--;
-            } else {
-                break;
-            }
-        }
-        if (k >= 0) {
-            for (int m=rule.rhs.size()-1; m >= 0; m--) {
-                newDerivation.add(0,rule.rhs.get(m));
-            }
-            for (int p=k-1; p >=0; p--) {
-                newDerivation.add(0,derivation.get(p));
-            }
-        }
-        return newDerivation;
-    }
-
-    private List<List<GrammarToken>> getDerivations(List<Configuration> configs) {
-        List<List<GrammarToken>> derivations = new ArrayList<>();
-        boolean addStart = true;
-        List<GrammarToken> lastDerivation = null;
-        for (int i=configs.size()-2; i >= 0; i--) {
-            Configuration config = configs.get(i);
-            List<Rule> rules = config.transition.rulesForReduction;
-            for (int j= rules.size()-1; j >= 0; j--) {
-                Rule rule = rules.get(j);
-                if (addStart) {
-                    derivations.add(Arrays.asList(rule.lhs));
-                    lastDerivation = rule.rhs;
-                    derivations.add(lastDerivation);
-                } else {
-                    // do right most replacement
-                    derivations.add(getRightMostReplacement(lastDerivation,rule));
-                    lastDerivation = derivations.get(derivations.size()-1);
-                }
-                addStart = false;
-            }
+    /**
+     * @param configs an accepting trace from process()
+     * @return the rightmost derivation given by the reductions of the trace, read lazily
+     */
+    private RightmostDerivation getDerivations(List<Configuration> configs) {
+        List<Transition> transitions = new ArrayList<>();
+        for (int i=0; i < configs.size()-1; i++) {
+            transitions.add(configs.get(i).transition);
         }
-        return derivations;
+        return RightmostDerivation.of(transitions);
     }
 
     public void printDerivations(List<Configuration> configs) {
         if (!this.acceptString(configs)) {
             return;
         }
-        List<List<GrammarToken>> derivations = getDerivations(configs);
-        boolean first = true;
-        for (List<GrammarToken> derivation : derivations) {
-            if (!first) {
-                System.out.print("-->");
-            }
-            for (GrammarToken token : derivation) {
-                System.out.print(token);
-            }
-            first = false;
+        DerivationEvent event = new DerivationEvent();
+        event.begin();
+        RightmostDerivation derivation = getDerivations(configs);
+        try {
+            derivation.writeTo(System.out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.traceLength = configs.size();
+            event.rules = derivation.length();
+            event.commit();
         }
         System.out.println("");
     }
 
-    public static void test1() throws Exception {
+    /**
+     * @return the expression grammar of test2, S -> E$, E -> T+E | T, T -> F*T | F,
+     * F -> (E) | n, with S as the first rule
+     */
+    public static List<Rule> test2Grammar() {
+        VariableToken sToken = toVariable("S");
+        VariableToken eToken = toVariable("E");
+        VariableToken tToken = toVariable("T");
+        VariableToken fToken = toVariable("F");
+        TerminalToken nToken = toTerminal("n");
+        TerminalToken endToken = toTerminal("$");
+        TerminalToken plusToken = toTerminal("+");
+        TerminalToken multToken = toTerminal("*");
+        TerminalToken openParToken = toTerminal("(");
+        TerminalToken closedParToken = toTerminal(")");
+        return Arrays.asList(
+                new Rule(sToken, Arrays.asList(eToken, endToken)),
+                new Rule(eToken, Arrays.asList(tToken, plusToken, eToken)),
+                new Rule(eToken, Arrays.asList(tToken)),
+                new Rule(tToken, Arrays.asList(fToken, multToken, tToken)),
+                new Rule(tToken, Arrays.asList(fToken)),
+                new Rule(fToken, Arrays.asList(openParToken, eToken, closedParToken)),
+                new Rule(fToken, Arrays.asList(nToken)));
+    }
+
+    /**
+     * @return DPDA for the language of test2 generated from its grammar by LRGenerator
+     */
+    public static DPDA buildTest2Generated() throws Exception {
+        List<Rule> rules = test2Grammar();
+        return LRGenerator.generate(rules, rules.get(0).lhs);
+    }
+
+    /**
+     * Checks the generated code of the automata of test1 and test2 against process()
+     */
+    public static void testGeneratedCode() throws Exception {
+        DPDA [] pdas = {buildTest1(), buildTest2(), buildTest2Generated()};
+        for (DPDA pda : pdas) {
+            System.out.println("Generated code differs on " + pda.checkGeneratedCode(100000, 30, 1)
+                    + " of 100000 inputs");
+        }
+    }
+
+    /**
+     * @return DPDA of test1 for strings over a, b ending in $ with equal numbers of a and b
+     */
+    public static DPDA buildTest1() throws Exception {
         Set<String> terminals = new HashSet<>(Arrays.asList("a","b", "$"));
         Set<String> variables = new HashSet<>(Arrays.asList("A","B"));
         DPDA pda = new DPDA(6,0,terminals,variables,new HashSet<>(Arrays.asList(5)));
-        TerminalToken aToken = toTerminal("a");
-        TerminalToken bToken = toTerminal("b");
-        TerminalToken endToken = toTerminal("$");
+        TerminalToken aToken = pda.terminal("a");
+        TerminalToken bToken = pda.terminal("b");
+        TerminalToken endToken = pda.terminal("$");
         pda.addTransition(0,TerminalToken.EPSILON, EPSILON_STACK,1,
                 Arrays.asList(endToken),null);
         pda.addTransition(1, aToken, Arrays.asList(endToken), 2, Arrays.asList(endToken),null);
@@ -487,34 +872,42 @@ public class DPDA {
         pda.addTransition(4, bToken, Arrays.asList(aToken), 4, EPSILON_STACK,null);
         pda.addTransition(4, aToken, Arrays.asList(bToken), 4, EPSILON_STACK,null);
         pda.addTransition(4, endToken, Arrays.asList(endToken), 5, EPSILON_STACK,null);
-        List<Configuration> configurations = pda.process(toTerminalTokens(new String []
+        return pda;
+    }
+
+    public static void test1() throws Exception {
+        DPDA pda = buildTest1();
+        List<Configuration> configurations = pda.process(pda.terminals(new String []
                 {"a","a", "b","b","b", "a", "a", "b", "$"}));
         printConfigs(configurations);
         System.out.println("Accept string " + "aabbbaab$ ? " + pda.acceptString(configurations));
-        configurations = pda.process(toTerminalTokens(new String []
+        configurations = pda.process(pda.terminals(new String []
                 {"b","a", "b","b","b", "a", "a", "b", "$"}));
         printConfigs(configurations);
         System.out.println("Accept string " + "babbbaab$ ? " + pda.acceptString(configurations));
     }
 
-    public static void test2() throws Exception {
+    /**
+     * @return DPDA of test2 that parses arithmetic expressions over n with +, * and parentheses
+     */
+    public static DPDA buildTest2() throws Exception {
         Set<String> terminals = new HashSet<>(Arrays.asList("n", "+", "*", "(", ")", "$"));
         Set<String> variables = new HashSet<>(Arrays.asList("S","E", "T", "F"));
         DPDA pda = new DPDA(14, 0, terminals, variables, new HashSet<>(Arrays.asList(5)));
-        TerminalToken nToken = toTerminal("n");
-        TerminalToken endToken = toTerminal("$");
-        TerminalToken plusToken = toTerminal("+");
-        TerminalToken multToken = toTerminal("*");
-        TerminalToken openParToken = toTerminal("(");
-        TerminalToken closedParToken = toTerminal(")");
+        TerminalToken nToken = pda.terminal("n");
+        TerminalToken endToken = pda.terminal("$");
+        TerminalToken plusToken = pda.terminal("+");
+        TerminalToken multToken = pda.terminal("*");
+        TerminalToken openParToken = pda.terminal("(");
+        TerminalToken closedParToken = pda.terminal(")");
 
-        VariableToken sToken = toVariable("S");
-        VariableToken eToken = toVariable("E");
-        VariableToken tToken = toVariable("T");
-        VariableToken fToken = toVariable("F");
-        StackToken laClosedParToken = new LookAheadToken(closedParToken);
-        StackToken laEndToken = new LookAheadToken(endToken);
-        StackToken laPlusToken = new LookAheadToken(plusToken);
+        VariableToken sToken = pda.variable("S");
+        VariableToken eToken = pda.variable("E");
+        VariableToken tToken = pda.variable("T");
+        VariableToken fToken = pda.variable("F");
+        StackToken laClosedParToken = pda.lookAhead(closedParToken);
+        StackToken laEndToken = pda.lookAhead(endToken);
+        StackToken laPlusToken = pda.lookAhead(plusToken);
 
         // Rules for grammer
         Rule rule1 = new Rule(sToken, Arrays.asList(eToken, endToken));
@@ -527,30 +920,30 @@ public class DPDA {
 
         List<Rule> emptyRules = new ArrayList<>();
         pda.addTransition(0, TerminalToken.EPSILON, EPSILON_STACK,1,
-                Arrays.asList(toState(1)),emptyRules);
+                Arrays.asList(pda.state(1)),emptyRules);
         pda.addTransition(1, nToken, EPSILON_STACK,2,
-                Arrays.asList(toState(2), nToken),emptyRules);
+                Arrays.asList(pda.state(2), nToken),emptyRules);
         pda.addTransition(1, openParToken, EPSILON_STACK,3,
-                Arrays.asList(toState(3), openParToken),emptyRules);
+                Arrays.asList(pda.state(3), openParToken),emptyRules);
         int [] prevStatesForVariable = new int [] {1,3,10,11};
         int [] nextStatesForVariable = new int [] {8,8,8,8};
         for (int i=0; i < prevStatesForVariable.length; i++) {
             int prevState = prevStatesForVariable[i];
             int nextState = nextStatesForVariable[i];
             pda.addTransition(2, TerminalToken.EPSILON,
-                    Arrays.asList(toState(2), nToken, toState(prevState)), nextState,
-                    Arrays.asList(toState(nextState),fToken,toState(prevState)), Arrays.asList(rule7));
+                    Arrays.asList(pda.state(2), nToken, pda.state(prevState)), nextState,
+                    Arrays.asList(pda.state(nextState),fToken,pda.state(prevState)), Arrays.asList(rule7));
         }
         pda.addTransition(3, nToken, EPSILON_STACK,2,
-                Arrays.asList(toState(2), nToken),emptyRules);
+                Arrays.asList(pda.state(2), nToken),emptyRules);
         pda.addTransition(3, openParToken, EPSILON_STACK,3,
-                Arrays.asList(toState(3), openParToken),emptyRules);
-        pda.addTransition(4, endToken, Arrays.asList(toState(4)),5,
-                Arrays.asList(toState(5), endToken), emptyRules);
+                Arrays.asList(pda.state(3), openParToken),emptyRules);
+        pda.addTransition(4, endToken, Arrays.asList(pda.state(4)),5,
+                Arrays.asList(pda.state(5), endToken), emptyRules);
         pda.addTransition(4, TerminalToken.EPSILON, Arrays.asList(laEndToken),5,
-                Arrays.asList(toState(5), endToken), emptyRules);
+                Arrays.asList(pda.state(5), endToken), emptyRules);
         pda.addTransition(5, TerminalToken.EPSILON,
-                Arrays.asList(toState(5), endToken, StateToken.WILDCARD, eToken, toState(1)),5,
+                Arrays.asList(pda.state(5), endToken, StateToken.WILDCARD, eToken, pda.state(1)),5,
                 Arrays.asList(sToken), Arrays.asList(rule1));
         prevStatesForVariable = new int [] {1,3,10};
         nextStatesForVariable = new int [] {4,7,13};
@@ -558,60 +951,60 @@ public class DPDA {
             int prevState = prevStatesForVariable[i];
             int nextState = nextStatesForVariable[i];
             pda.addTransition(6, closedParToken,
-                    Arrays.asList(toState(6), tToken, toState(prevState)), nextState,
-                    Arrays.asList(laClosedParToken, toState(nextState), eToken,toState(prevState)),
+                    Arrays.asList(pda.state(6), tToken, pda.state(prevState)), nextState,
+                    Arrays.asList(laClosedParToken, pda.state(nextState), eToken,pda.state(prevState)),
                     Arrays.asList(rule3));
             pda.addTransition(6, TerminalToken.EPSILON,
-                    Arrays.asList(laClosedParToken,toState(6), tToken, toState(prevState)), nextState,
-                    Arrays.asList(laClosedParToken, toState(nextState), eToken,toState(prevState)),
+                    Arrays.asList(laClosedParToken,pda.state(6), tToken, pda.state(prevState)), nextState,
+                    Arrays.asList(laClosedParToken, pda.state(nextState), eToken,pda.state(prevState)),
                     Arrays.asList(rule3));
             pda.addTransition(6, endToken,
-                    Arrays.asList(toState(6), tToken, toState(prevState)), nextState,
-                    Arrays.asList(laEndToken, toState(nextState), eToken,toState(prevState)),
+                    Arrays.asList(pda.state(6), tToken, pda.state(prevState)), nextState,
+                    Arrays.asList(laEndToken, pda.state(nextState), eToken,pda.state(prevState)),
                     Arrays.asList(rule3));
             pda.addTransition(6, TerminalToken.EPSILON,
-                    Arrays.asList(laEndToken, toState(6), tToken, toState(prevState)), nextState,
-                    Arrays.asList(laEndToken, toState(nextState), eToken,toState(prevState)),
+                    Arrays.asList(laEndToken, pda.state(6), tToken, pda.state(prevState)), nextState,
+                    Arrays.asList(laEndToken, pda.state(nextState), eToken,pda.state(prevState)),
                     Arrays.asList(rule3));
         }
         pda.addTransition(6, plusToken, EPSILON_STACK,10,
-                Arrays.asList(toState(10), plusToken), emptyRules);
+                Arrays.asList(pda.state(10), plusToken), emptyRules);
         pda.addTransition(6, TerminalToken.EPSILON, Arrays.asList(laPlusToken),10,
-                Arrays.asList(toState(10), plusToken), emptyRules);
-        pda.addTransition(7, closedParToken, Arrays.asList(toState(7)),9,
-                Arrays.asList(toState(9), closedParToken), emptyRules);
+                Arrays.asList(pda.state(10), plusToken), emptyRules);
+        pda.addTransition(7, closedParToken, Arrays.asList(pda.state(7)),9,
+                Arrays.asList(pda.state(9), closedParToken), emptyRules);
         pda.addTransition(7, TerminalToken.EPSILON, Arrays.asList(laClosedParToken),9,
-                Arrays.asList(toState(9), closedParToken), emptyRules);
+                Arrays.asList(pda.state(9), closedParToken), emptyRules);
         pda.addTransition(8, multToken, EPSILON_STACK,11,
-                Arrays.asList(toState(11), multToken), emptyRules);
+                Arrays.asList(pda.state(11), multToken), emptyRules);
         prevStatesForVariable = new int [] {1,3,10,11};
         nextStatesForVariable = new int [] {6,6,6,12};
         for (int i=0; i < prevStatesForVariable.length; i++) {
             int prevState = prevStatesForVariable[i];
             int nextState = nextStatesForVariable[i];
             pda.addTransition(8, plusToken,
-                    Arrays.asList(toState(8), fToken, toState(prevState)), nextState,
-                    Arrays.asList(laPlusToken, toState(nextState), tToken,toState(prevState)),
+                    Arrays.asList(pda.state(8), fToken, pda.state(prevState)), nextState,
+                    Arrays.asList(laPlusToken, pda.state(nextState), tToken,pda.state(prevState)),
                     Arrays.asList(rule5));
             pda.addTransition(8, closedParToken,
-                    Arrays.asList(toState(8), fToken, toState(prevState)), nextState,
-                    Arrays.asList(laClosedParToken, toState(nextState), tToken,toState(prevState)),
+                    Arrays.asList(pda.state(8), fToken, pda.state(prevState)), nextState,
+                    Arrays.asList(laClosedParToken, pda.state(nextState), tToken,pda.state(prevState)),
                     Arrays.asList(rule5));
             pda.addTransition(8, endToken,
-                    Arrays.asList(toState(8), fToken, toState(prevState)), nextState,
-                    Arrays.asList(laEndToken, toState(nextState), tToken,toState(prevState)),
+                    Arrays.asList(pda.state(8), fToken, pda.state(prevState)), nextState,
+                    Arrays.asList(laEndToken, pda.state(nextState), tToken,pda.state(prevState)),
                     Arrays.asList(rule5));
             pda.addTransition(8, TerminalToken.EPSILON,
-                    Arrays.asList(laPlusToken, toState(8), fToken, toState(prevState)), nextState,
-                    Arrays.asList(laPlusToken, toState(nextState), tToken,toState(prevState)),
+                    Arrays.asList(laPlusToken, pda.state(8), fToken, pda.state(prevState)), nextState,
+                    Arrays.asList(laPlusToken, pda.state(nextState), tToken,pda.state(prevState)),
                     Arrays.asList(rule5));
             pda.addTransition(8, TerminalToken.EPSILON,
-                    Arrays.asList(laClosedParToken, toState(8), fToken, toState(prevState)), nextState,
-                    Arrays.asList(laClosedParToken, toState(nextState), tToken,toState(prevState)),
+                    Arrays.asList(laClosedParToken, pda.state(8), fToken, pda.state(prevState)), nextState,
+                    Arrays.asList(laClosedParToken, pda.state(nextState), tToken,pda.state(prevState)),
                     Arrays.asList(rule5));
             pda.addTransition(8, TerminalToken.EPSILON,
-                    Arrays.asList(laEndToken,toState(8), fToken, toState(prevState)), nextState,
-                    Arrays.asList(laEndToken, toState(nextState), tToken,toState(prevState)),
+                    Arrays.asList(laEndToken,pda.state(8), fToken, pda.state(prevState)), nextState,
+                    Arrays.asList(laEndToken, pda.state(nextState), tToken,pda.state(prevState)),
                     Arrays.asList(rule5));
         }
         prevStatesForVariable = new int [] {1,3,10,11};
@@ -620,61 +1013,61 @@ public class DPDA {
             int prevState = prevStatesForVariable[i];
             int nextState = nextStatesForVariable[i];
             pda.addTransition(9, TerminalToken.EPSILON,
-                    Arrays.asList(toState(9), closedParToken,
+                    Arrays.asList(pda.state(9), closedParToken,
                             StateToken.WILDCARD, eToken,
                             StateToken.WILDCARD, openParToken,
-                            toState(prevState)
+                            pda.state(prevState)
                     ), nextState,
-                    Arrays.asList(toState(nextState),fToken,toState(prevState)), Arrays.asList(rule6));
+                    Arrays.asList(pda.state(nextState),fToken,pda.state(prevState)), Arrays.asList(rule6));
             pda.addTransition(9, TerminalToken.EPSILON,
-                    Arrays.asList(laClosedParToken, toState(9), closedParToken,
+                    Arrays.asList(laClosedParToken, pda.state(9), closedParToken,
                             StateToken.WILDCARD, eToken,
                             StateToken.WILDCARD, openParToken,
-                            toState(prevState)
+                            pda.state(prevState)
                     ), nextState,
-                    Arrays.asList(laClosedParToken, toState(nextState),fToken,toState(prevState)), Arrays.asList(rule6));
+                    Arrays.asList(laClosedParToken, pda.state(nextState),fToken,pda.state(prevState)), Arrays.asList(rule6));
         }
         pda.addTransition(10, nToken, EPSILON_STACK,2,
-                Arrays.asList(toState(2), nToken), emptyRules);
+                Arrays.asList(pda.state(2), nToken), emptyRules);
         pda.addTransition(10, openParToken, EPSILON_STACK,3,
-                Arrays.asList(toState(3), openParToken), emptyRules);
+                Arrays.asList(pda.state(3), openParToken), emptyRules);
         pda.addTransition(11, nToken, EPSILON_STACK,2,
-                Arrays.asList(toState(2), nToken), emptyRules);
+                Arrays.asList(pda.state(2), nToken), emptyRules);
         pda.addTransition(11, openParToken, EPSILON_STACK,3,
-                Arrays.asList(toState(3), openParToken), emptyRules);
+                Arrays.asList(pda.state(3), openParToken), emptyRules);
         prevStatesForVariable = new int [] {1,3,10,11};
         nextStatesForVariable = new int [] {6,6,6,12};
         for (int i=0; i < prevStatesForVariable.length; i++) {
             int prevState = prevStatesForVariable[i];
             int nextState = nextStatesForVariable[i];
             pda.addTransition(12, TerminalToken.EPSILON,
-                    Arrays.asList(toState(12), tToken,
+                    Arrays.asList(pda.state(12), tToken,
                             StateToken.WILDCARD, multToken,
                             StateToken.WILDCARD, fToken,
-                            toState(prevState)
+                            pda.state(prevState)
                     ), nextState,
-                    Arrays.asList(toState(nextState),tToken,toState(prevState)), Arrays.asList(rule4));
+                    Arrays.asList(pda.state(nextState),tToken,pda.state(prevState)), Arrays.asList(rule4));
             pda.addTransition(12, TerminalToken.EPSILON,
-                    Arrays.asList(laClosedParToken, toState(12), tToken,
+                    Arrays.asList(laClosedParToken, pda.state(12), tToken,
                             StateToken.WILDCARD, multToken,
                             StateToken.WILDCARD, fToken,
-                            toState(prevState)
+                            pda.state(prevState)
                     ), nextState,
-                    Arrays.asList(laClosedParToken,toState(nextState),tToken,toState(prevState)), Arrays.asList(rule4));
+                    Arrays.asList(laClosedParToken,pda.state(nextState),tToken,pda.state(prevState)), Arrays.asList(rule4));
             pda.addTransition(12, TerminalToken.EPSILON,
-                    Arrays.asList(laEndToken, toState(12), tToken,
+                    Arrays.asList(laEndToken, pda.state(12), tToken,
                             StateToken.WILDCARD, multToken,
                             StateToken.WILDCARD, fToken,
-                            toState(prevState)
+                            pda.state(prevState)
                     ), nextState,
-                    Arrays.asList(laEndToken, toState(nextState),tToken,toState(prevState)), Arrays.asList(rule4));
+                    Arrays.asList(laEndToken, pda.state(nextState),tToken,pda.state(prevState)), Arrays.asList(rule4));
             pda.addTransition(12, TerminalToken.EPSILON,
-                    Arrays.asList(laPlusToken, toState(12), tToken,
+                    Arrays.asList(laPlusToken, pda.state(12), tToken,
                             StateToken.WILDCARD, multToken,
                             StateToken.WILDCARD, fToken,
-                            toState(prevState)
+                            pda.state(prevState)
                     ), nextState,
-                    Arrays.asList(laPlusToken, toState(nextState),tToken,toState(prevState)), Arrays.asList(rule4));
+                    Arrays.asList(laPlusToken, pda.state(nextState),tToken,pda.state(prevState)), Arrays.asList(rule4));
         }
         prevStatesForVariable = new int [] {1,3,10};
         nextStatesForVariable = new int [] {4,7,13};
@@ -682,48 +1075,54 @@ public class DPDA {
             int prevState = prevStatesForVariable[i];
             int nextState = nextStatesForVariable[i];
             pda.addTransition(13, TerminalToken.EPSILON,
-                    Arrays.asList(toState(13), eToken,
+                    Arrays.asList(pda.state(13), eToken,
                             StateToken.WILDCARD, plusToken,
                             StateToken.WILDCARD, tToken,
-                            toState(prevState)
+                            pda.state(prevState)
                     ), nextState,
-                    Arrays.asList(toState(nextState),eToken,toState(prevState)), Arrays.asList(rule2));
+                    Arrays.asList(pda.state(nextState),eToken,pda.state(prevState)), Arrays.asList(rule2));
             pda.addTransition(13, TerminalToken.EPSILON,
-                    Arrays.asList(laClosedParToken, toState(13), eToken,
+                    Arrays.asList(laClosedParToken, pda.state(13), eToken,
                             StateToken.WILDCARD, plusToken,
                             StateToken.WILDCARD, tToken,
-                            toState(prevState)
+                            pda.state(prevState)
                     ), nextState,
-                    Arrays.asList(laClosedParToken, toState(nextState),eToken,toState(prevState)), Arrays.asList(rule2));
+                    Arrays.asList(laClosedParToken, pda.state(nextState),eToken,pda.state(prevState)), Arrays.asList(rule2));
             pda.addTransition(13, TerminalToken.EPSILON,
-                    Arrays.asList(laEndToken, toState(13), eToken,
+                    Arrays.asList(laEndToken, pda.state(13), eToken,
                             StateToken.WILDCARD, plusToken,
                             StateToken.WILDCARD, tToken,
-                            toState(prevState)
+                            pda.state(prevState)
                     ), nextState,
-                    Arrays.asList(laEndToken, toState(nextState),eToken,toState(prevState)), Arrays.asList(rule2));
+                    Arrays.asList(laEndToken, pda.state(nextState),eToken,pda.state(prevState)), Arrays.asList(rule2));
         }
-        List<Configuration> configurations = pda.process(toTerminalTokens(new String []
+        return pda;
+    }
+
+    public static void test2() throws Exception {
+        DPDA pda = buildTest2();
+        List<Configuration> configurations = pda.process(pda.terminals(new String []
                 {"n", "*", "n", "+", "(", "n", "*", "n",  ")", "$"}));
         printConfigs(configurations);
         pda.printDerivations(configurations);
         System.out.println("Accept string " + "n*n+(n*n)$? " + pda.acceptString(configurations));
-        configurations = pda.process(toTerminalTokens(new String []
+        configurations = pda.process(pda.terminals(new String []
                 {"n", "*", "n", "(", "n", "*", "n",  ")", "$"}));
         printConfigs(configurations);
         pda.printDerivations(configurations);
         System.out.println("Accept string " + "n*n(n*n)$? " + pda.acceptString(configurations));
-        configurations = pda.process(toTerminalTokens(new String []
+        configurations = pda.process(pda.terminals(new String []
                 {"(", "n", "*", "(", "n", "+", "n", ")", ")", "$"}));
         printConfigs(configurations);
         pda.printDerivations(configurations);
         System.out.println("Accept string " + "(n*(n+n))$? " + pda.acceptString(configurations));
     }
 
-    public static void test3() throws Exception {
-        Set<String> terminals = new HashSet<>(Arrays.asList("y","z","+","-","*","/","(",")","=",";","$"));
-        Set<String> variables = new HashSet<>(Arrays.asList("S","B","T","T1","T2","F1","F2","X","C","N","I"));
-        DPDA pda = new DPDA(34, 0, terminals, variables, new HashSet<>(Arrays.asList(3)));
+    /**
+     * @return the grammar of test3, statements X = T ; ending in an expression over
+     * +, -, * and / with numbers z..z and names y..y, with S -> B$ as the first rule
+     */
+    public static List<Rule> test3Grammar() {
         TerminalToken yToken = toTerminal("y");
         TerminalToken zToken = toTerminal("z");
         TerminalToken plusToken = toTerminal("+");
@@ -748,235 +1147,62 @@ public class DPDA {
         VariableToken nToken = toVariable("N");
         VariableToken iToken = toVariable("I");
 
-        StackToken laEndToken = new LookAheadToken(endToken);
-        StackToken laScToken = new LookAheadToken(scToken);
-        StackToken laPlusToken = new LookAheadToken(plusToken);
-        StackToken laClosedParToken = new LookAheadToken(closedParToken);
-        StackToken laMinusToken = new LookAheadToken(minusToken);
-        StackToken laMultToken = new LookAheadToken(multToken);
-        StackToken laDivToken = new LookAheadToken(divToken);
-        StackToken laIToken = new LookAheadToken(iToken);
-        StackToken laXToken = new LookAheadToken(xToken);
-        StackToken laEqToken = new LookAheadToken(eqToken);
-
         // Rules for grammer
-        Rule rule1 = new Rule(sToken, Arrays.asList(bToken, endToken));
-        Rule rule2 = new Rule(bToken, Arrays.asList(tToken));
-        Rule rule3 = new Rule(bToken, Arrays.asList(xToken, eqToken, tToken, scToken, bToken));
-        Rule rule4 = new Rule(tToken, Arrays.asList(tToken, plusToken, t1Token));
-        Rule rule5 = new Rule(tToken, Arrays.asList(t1Token));
-        Rule rule6 = new Rule(t1Token, Arrays.asList(t1Token,minusToken,t2Token))
-        Rule rule7 = new Rule(t1Token, Arrays.asList(t2Token));
-        Rule rule8 = new Rule(t2Token, Arrays.asList(t2Token,multToken,f1Token));
-        Rule rule9 = new Rule(t2Token, Arrays.asList(f1Token));
-        Rule rule10 = new Rule(f1Token, Arrays.asList(f1Token,divToken,f2Token));
-        Rule rule11 = new Rule(f1Token, Arrays.asList(f2Token));
-        Rule rule12 = new Rule(f2Token, Arrays.asList(iToken));
-        Rule rule13 = new Rule(f2Token, Arrays.asList(xToken));
-        Rule rule14 = new Rule(f2Token, Arrays.asList(openParToken,tToken,closedParToken));
-        Rule rule15 = new Rule(iToken, Arrays.asList(nToken,iToken));
-        Rule rule16 = new Rule(iToken, Arrays.asList(nToken));
-        Rule rule17 = new Rule(nToken, Arrays.asList(zToken));
-        Rule rule18 = new Rule(xToken, Arrays.asList(cToken,xToken));
-        Rule rule19 = new Rule(xToken, Arrays.asList(cToken));
-        Rule rule20 = new Rule(cToken, Arrays.asList(yToken));
+        return Arrays.asList(
+                new Rule(sToken, Arrays.asList(bToken, endToken)),
+                new Rule(bToken, Arrays.asList(tToken)),
+                new Rule(bToken, Arrays.asList(xToken, eqToken, tToken, scToken, bToken)),
+                new Rule(tToken, Arrays.asList(tToken, plusToken, t1Token)),
+                new Rule(tToken, Arrays.asList(t1Token)),
+                new Rule(t1Token, Arrays.asList(t1Token,minusToken,t2Token)),
+                new Rule(t1Token, Arrays.asList(t2Token)),
+                new Rule(t2Token, Arrays.asList(t2Token,multToken,f1Token)),
+                new Rule(t2Token, Arrays.asList(f1Token)),
+                new Rule(f1Token, Arrays.asList(f1Token,divToken,f2Token)),
+                new Rule(f1Token, Arrays.asList(f2Token)),
+                new Rule(f2Token, Arrays.asList(iToken)),
+                new Rule(f2Token, Arrays.asList(xToken)),
+                new Rule(f2Token, Arrays.asList(openParToken,tToken,closedParToken)),
+                new Rule(iToken, Arrays.asList(nToken,iToken)),
+                new Rule(iToken, Arrays.asList(nToken)),
+                new Rule(nToken, Arrays.asList(zToken)),
+                new Rule(xToken, Arrays.asList(cToken,xToken)),
+                new Rule(xToken, Arrays.asList(cToken)),
+                new Rule(cToken, Arrays.asList(yToken)));
+    }
 
-        List<Rule> emptyRules = new ArrayList<>();
-        pda.addTransition(0, TerminalToken.EPSILON, EPSILON_STACK,1,
-                Arrays.asList(toState(1)),emptyRules);
-        pda.addTransition(1, nToken, EPSILON_STACK,2,
-                Arrays.asList(toState(2), nToken),emptyRules);
-        pda.addTransition(1, openParToken, EPSILON_STACK,3,
-                Arrays.asList(toState(3), openParToken),emptyRules);
-        int [] prevStatesForVariable = new int [] {1,3,10,11};
-        int [] nextStatesForVariable = new int [] {8,8,8,8};
-        for (int i=0; i < prevStatesForVariable.length; i++) {
-            int prevState = prevStatesForVariable[i];
-            int nextState = nextStatesForVariable[i];
-            pda.addTransition(2, TerminalToken.EPSILON,
-                    Arrays.asList(toState(2), nToken, toState(prevState)), nextState,
-                    Arrays.asList(toState(nextState),fToken,toState(prevState)), Arrays.asList(rule7));
-        }
-        pda.addTransition(3, nToken, EPSILON_STACK,2,
-                Arrays.asList(toState(2), nToken),emptyRules);
-        pda.addTransition(3, openParToken, EPSILON_STACK,3,
-                Arrays.asList(toState(3), openParToken),emptyRules);
-        pda.addTransition(4, endToken, Arrays.asList(toState(4)),5,
-                Arrays.asList(toState(5), endToken), emptyRules);
-        pda.addTransition(4, TerminalToken.EPSILON, Arrays.asList(laEndToken),5,
-                Arrays.asList(toState(5), endToken), emptyRules);
-        pda.addTransition(5, TerminalToken.EPSILON,
-                Arrays.asList(toState(5), endToken, StateToken.WILDCARD, eToken, toState(1)),5,
-                Arrays.asList(sToken), Arrays.asList(rule1));
-        prevStatesForVariable = new int [] {1,3,10};
-        nextStatesForVariable = new int [] {4,7,13};
-        for (int i=0; i < prevStatesForVariable.length; i++) {
-            int prevState = prevStatesForVariable[i];
-            int nextState = nextStatesForVariable[i];
-            pda.addTransition(6, closedParToken,
-                    Arrays.asList(toState(6), tToken, toState(prevState)), nextState,
-                    Arrays.asList(laClosedParToken, toState(nextState), eToken,toState(prevState)),
-                    Arrays.asList(rule3));
-            pda.addTransition(6, TerminalToken.EPSILON,
-                    Arrays.asList(laClosedParToken,toState(6), tToken, toState(prevState)), nextState,
-                    Arrays.asList(laClosedParToken, toState(nextState), eToken,toState(prevState)),
-                    Arrays.asList(rule3));
-            pda.addTransition(6, endToken,
-                    Arrays.asList(toState(6), tToken, toState(prevState)), nextState,
-                    Arrays.asList(laEndToken, toState(nextState), eToken,toState(prevState)),
-                    Arrays.asList(rule3));
-            pda.addTransition(6, TerminalToken.EPSILON,
-                    Arrays.asList(laEndToken, toState(6), tToken, toState(prevState)), nextState,
-                    Arrays.asList(laEndToken, toState(nextState), eToken,toState(prevState)),
-                    Arrays.asList(rule3));
-        }
-        pda.addTransition(6, plusToken, EPSILON_STACK,10,
-                Arrays.asList(toState(10), plusToken), emptyRules);
-        pda.addTransition(6, TerminalToken.EPSILON, Arrays.asList(laPlusToken),10,
-                Arrays.asList(toState(10), plusToken), emptyRules);
-        pda.addTransition(7, closedParToken, Arrays.asList(toState(7)),9,
-                Arrays.asList(toState(9), closedParToken), emptyRules);
-        pda.addTransition(7, TerminalToken.EPSILON, Arrays.asList(laClosedParToken),9,
-                Arrays.asList(toState(9), closedParToken), emptyRules);
-        pda.addTransition(8, multToken, EPSILON_STACK,11,
-                Arrays.asList(toState(11), multToken), emptyRules);
-        prevStatesForVariable = new int [] {1,3,10,11};
-        nextStatesForVariable = new int [] {6,6,6,12};
-        for (int i=0; i < prevStatesForVariable.length; i++) {
-            int prevState = prevStatesForVariable[i];
-            int nextState = nextStatesForVariable[i];
-            pda.addTransition(8, plusToken,
-                    Arrays.asList(toState(8), fToken, toState(prevState)), nextState,
-                    Arrays.asList(laPlusToken, toState(nextState), tToken,toState(prevState)),
-                    Arrays.asList(rule5));
-            pda.addTransition(8, closedParToken,
-                    Arrays.asList(toState(8), fToken, toState(prevState)), nextState,
-                    Arrays.asList(laClosedParToken, toState(nextState), tToken,toState(prevState)),
-                    Arrays.asList(rule5));
-            pda.addTransition(8, endToken,
-                    Arrays.asList(toState(8), fToken, toState(prevState)), nextState,
-                    Arrays.asList(laEndToken, toState(nextState), tToken,toState(prevState)),
-                    Arrays.asList(rule5));
-            pda.addTransition(8, TerminalToken.EPSILON,
-                    Arrays.asList(laPlusToken, toState(8), fToken, toState(prevState)), nextState,
-                    Arrays.asList(laPlusToken, toState(nextState), tToken,toState(prevState)),
-                    Arrays.asList(rule5));
-            pda.addTransition(8, TerminalToken.EPSILON,
-                    Arrays.asList(laClosedParToken, toState(8), fToken, toState(prevState)), nextState,
-                    Arrays.asList(laClosedParToken, toState(nextState), tToken,toState(prevState)),
-                    Arrays.asList(rule5));
-            pda.addTransition(8, TerminalToken.EPSILON,
-                    Arrays.asList(laEndToken,toState(8), fToken, toState(prevState)), nextState,
-                    Arrays.asList(laEndToken, toState(nextState), tToken,toState(prevState)),
-                    Arrays.asList(rule5));
-        }
-        prevStatesForVariable = new int [] {1,3,10,11};
-        nextStatesForVariable = new int [] {8,8,8,8};
-        for (int i=0; i < prevStatesForVariable.length; i++) {
-            int prevState = prevStatesForVariable[i];
-            int nextState = nextStatesForVariable[i];
-            pda.addTransition(9, TerminalToken.EPSILON,
-                    Arrays.asList(toState(9), closedParToken,
-                            StateToken.WILDCARD, eToken,
-                            StateToken.WILDCARD, openParToken,
-                            toState(prevState)
-                    ), nextState,
-                    Arrays.asList(toState(nextState),fToken,toState(prevState)), Arrays.asList(rule6));
-            pda.addTransition(9, TerminalToken.EPSILON,
-                    Arrays.asList(laClosedParToken, toState(9), closedParToken,
-                            StateToken.WILDCARD, eToken,
-                            StateToken.WILDCARD, openParToken,
-                            toState(prevState)
-                    ), nextState,
-                    Arrays.asList(laClosedParToken, toState(nextState),fToken,toState(prevState)), Arrays.asList(rule6));
-        }
-        pda.addTransition(10, nToken, EPSILON_STACK,2,
-                Arrays.asList(toState(2), nToken), emptyRules);
-        pda.addTransition(10, openParToken, EPSILON_STACK,3,
-                Arrays.asList(toState(3), openParToken), emptyRules);
-        pda.addTransition(11, nToken, EPSILON_STACK,2,
-                Arrays.asList(toState(2), nToken), emptyRules);
-        pda.addTransition(11, openParToken, EPSILON_STACK,3,
-                Arrays.asList(toState(3), openParToken), emptyRules);
-        prevStatesForVariable = new int [] {1,3,10,11};
-        nextStatesForVariable = new int [] {6,6,6,12};
-        for (int i=0; i < prevStatesForVariable.length; i++) {
-            int prevState = prevStatesForVariable[i];
-            int nextState = nextStatesForVariable[i];
-            pda.addTransition(12, TerminalToken.EPSILON,
-                    Arrays.asList(toState(12), tToken,
-                            StateToken.WILDCARD, multToken,
-                            StateToken.WILDCARD, fToken,
-                            toState(prevState)
-                    ), nextState,
-                    Arrays.asList(toState(nextState),tToken,toState(prevState)), Arrays.asList(rule4));
-            pda.addTransition(12, TerminalToken.EPSILON,
-                    Arrays.asList(laClosedParToken, toState(12), tToken,
-                            StateToken.WILDCARD, multToken,
-                            StateToken.WILDCARD, fToken,
-                            toState(prevState)
-                    ), nextState,
-                    Arrays.asList(laClosedParToken,toState(nextState),tToken,toState(prevState)), Arrays.asList(rule4));
-            pda.addTransition(12, TerminalToken.EPSILON,
-                    Arrays.asList(laEndToken, toState(12), tToken,
-                            StateToken.WILDCARD, multToken,
-                            StateToken.WILDCARD, fToken,
-                            toState(prevState)
-                    ), nextState,
-                    Arrays.asList(laEndToken, toState(nextState),tToken,toState(prevState)), Arrays.asList(rule4));
-            pda.addTransition(12, TerminalToken.EPSILON,
-                    Arrays.asList(laPlusToken, toState(12), tToken,
-                            StateToken.WILDCARD, multToken,
-                            StateToken.WILDCARD, fToken,
-                            toState(prevState)
-                    ), nextState,
-                    Arrays.asList(laPlusToken, toState(nextState),tToken,toState(prevState)), Arrays.asList(rule4));
-        }
-        prevStatesForVariable = new int [] {1,3,10};
-        nextStatesForVariable = new int [] {4,7,13};
-        for (int i=0; i < prevStatesForVariable.length; i++) {
-            int prevState = prevStatesForVariable[i];
-            int nextState = nextStatesForVariable[i];
-            pda.addTransition(13, TerminalToken.EPSILON,
-                    Arrays.asList(toState(13), eToken,
-                            StateToken.WILDCARD, plusToken,
-                            StateToken.WILDCARD, tToken,
-                            toState(prevState)
-                    ), nextState,
-                    Arrays.asList(toState(nextState),eToken,toState(prevState)), Arrays.asList(rule2));
-            pda.addTransition(13, TerminalToken.EPSILON,
-                    Arrays.asList(laClosedParToken, toState(13), eToken,
-                            StateToken.WILDCARD, plusToken,
-                            StateToken.WILDCARD, tToken,
-                            toState(prevState)
-                    ), nextState,
-                    Arrays.asList(laClosedParToken, toState(nextState),eToken,toState(prevState)), Arrays.asList(rule2));
-            pda.addTransition(13, TerminalToken.EPSILON,
-                    Arrays.asList(laEndToken, toState(13), eToken,
-                            StateToken.WILDCARD, plusToken,
-                            StateToken.WILDCARD, tToken,
-                            toState(prevState)
-                    ), nextState,
-                    Arrays.asList(laEndToken, toState(nextState),eToken,toState(prevState)), Arrays.asList(rule2));
-        }
-        List<Configuration> configurations = pda.process(toTerminalTokens(new String []
-                {"n", "*", "n", "+", "(", "n", "*", "n",  ")", "$"}));
+    /**
+     * @return DPDA for the language of test3 generated from its grammar by LRGenerator
+     */
+    public static DPDA buildTest3() throws Exception {
+        List<Rule> rules = test3Grammar();
+        return LRGenerator.generate(rules, rules.get(0).lhs);
+    }
+
+    public static void test3() throws Exception {
+        DPDA pda = buildTest3();
+        List<Configuration> configurations = pda.process(pda.terminals(new String []
+                {"y", "=", "z", "z", "*", "y", ";", "y", "y", "-", "(", "z", "+", "y", ")", "/", "z", "$"}));
         printConfigs(configurations);
         pda.printDerivations(configurations);
-        System.out.println("Accept string " + "n*n+(n*n)$? " + pda.acceptString(configurations));
-        configurations = pda.process(toTerminalTokens(new String []
-                {"n", "*", "n", "(", "n", "*", "n",  ")", "$"}));
+        System.out.println("Accept string " + "y=zz*y;yy-(z+y)/z$? " + pda.acceptString(configurations));
+        configurations = pda.process(pda.terminals(new String []
+                {"y", "=", "z", ";", "z", "y", "$"}));
         printConfigs(configurations);
         pda.printDerivations(configurations);
-        System.out.println("Accept string " + "n*n(n*n)$? " + pda.acceptString(configurations));
-        configurations = pda.process(toTerminalTokens(new String []
-                {"(", "n", "*", "(", "n", "+", "n", ")", ")", "$"}));
+        System.out.println("Accept string " + "y=z;zy$? " + pda.acceptString(configurations));
+        configurations = pda.process(pda.terminals(new String []
+                {"(", "z", "*", "(", "y", "-", "z", ")", ")", "/", "y", "$"}));
         printConfigs(configurations);
         pda.printDerivations(configurations);
-        System.out.println("Accept string " + "(n*(n+n))$? " + pda.acceptString(configurations));
+        System.out.println("Accept string " + "(z*(y-z))/y$? " + pda.acceptString(configurations));
     }
 
     public static void main(String [] args) throws Exception {
+        if (args.length > 0) {
+            BatchValidator.main(args);
+            return;
+        }
         test1();
         //test2();
     }
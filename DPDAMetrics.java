@@ -0,0 +1,179 @@
+package edu.njit.cs314;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts of what the runs of a DPDA do, collected while metrics are turned on by
+ * DPDA.enableMetrics(): how often each transition fires and each state takes a step,
+ * where inputs are rejected, by state and input symbol, how runs end, and histograms of
+ * the steps per input, the deepest stack of each input and the percentage of steps
+ * that are epsilon moves. All counters are LongAdders, so runs on many threads update
+ * them without contention, and snapshot() can be called at any time while they run.
+ * Transition and state counts grow with each step, the outcome and histograms of a
+ * run are added when it ends, so a snapshot taken during a run holds part of it.
+ * Sessions make every step singly while metrics are on, so that each transition
+ * of a chain of epsilon moves is counted; with metrics off, nothing is recorded and
+ * the steps of a run are not checked for it.
+ * Date created: 10/18/26
+ */
+public class DPDAMetrics {
+
+    /**
+     * Histogram of values recorded from many threads, with the buckets of Histogram
+     */
+    static class ConcurrentHistogram {
+        private final LongAdder[] counts = new LongAdder[Histogram.N_BUCKETS];
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        public ConcurrentHistogram() {
+            for (int k = 0; k < counts.length; k++) {
+                counts[k] = new LongAdder();
+            }
+        }
+
+        public void record(long value) {
+            counts[Histogram.bucket(value)].increment();
+            max.accumulate(value);
+        }
+
+        public Histogram snapshot() {
+            long[] values = new long[counts.length];
+            for (int k = 0; k < counts.length; k++) {
+                values[k] = counts[k].sum();
+            }
+            return new Histogram(values, max.get());
+        }
+    }
+
+    /**
+     * Recorder of one run, which counts its steps as they are made and adds its
+     * outcome and histogram values when it ends. Used by one thread
+     */
+    class Run {
+        private int maxDepth;
+        private long epsilonSteps;
+
+        /**
+         * Counts a step
+         * @param transition index of the transition
+         * @param state state the step was taken from
+         * @param epsilon true if the step did not read input
+         * @param depth size of the stack after the step
+         */
+        public void step(int transition, int state, boolean epsilon, int depth) {
+            transitionHits[transition].increment();
+            stateHits[state].increment();
+            if (epsilon) {
+                epsilonSteps++;
+            }
+            if (depth > maxDepth) {
+                maxDepth = depth;
+            }
+        }
+
+        /**
+         * Adds the totals of the run
+         * @param outcome
+         * @param nSteps
+         * @param state final state
+         * @param input id of the input symbol that could not be read, SymbolTable.NONE
+         *              for a symbol that is not in the input alphabet, or END_OF_INPUT
+         */
+        public void finish(RecognitionResult.Outcome outcome, long nSteps, int state, int input) {
+            outcomes[outcome.ordinal()].increment();
+            steps.record(nSteps);
+            maxStackDepth.record(maxDepth);
+            if (nSteps > 0) {
+                epsilonPercent.record(100 * epsilonSteps / nSteps);
+            }
+            if (outcome == RecognitionResult.Outcome.REJECTED && state >= 0
+                    && state < table.nStates()) {
+                rejects[rejectIndex(table, state, input)].increment();
+            }
+        }
+    }
+
+    // passed to Run.finish() for a run that was rejected when its input ended
+    static final int END_OF_INPUT = -2;
+
+    private final TransitionTable table;
+    private final Map<DPDA.Transition,Integer> indexes = new IdentityHashMap<>();
+    private final LongAdder[] transitionHits;
+    private final LongAdder[] stateHits;
+    // [state][input + 2], see rejectIndex()
+    private final LongAdder[] rejects;
+    private final LongAdder[] outcomes;
+    private final ConcurrentHistogram steps = new ConcurrentHistogram();
+    private final ConcurrentHistogram maxStackDepth = new ConcurrentHistogram();
+    private final ConcurrentHistogram epsilonPercent = new ConcurrentHistogram();
+
+    DPDAMetrics(TransitionTable table) {
+        this.table = table;
+        for (int k = 0; k < table.nTransitions(); k++) {
+            indexes.put(table.transition(k).source, k);
+        }
+        transitionHits = adders(table.nTransitions());
+        stateHits = adders(table.nStates());
+        rejects = adders(table.nStates() * (table.nInputs() + 2));
+        outcomes = adders(RecognitionResult.Outcome.values().length);
+    }
+
+    /**
+     * Rejects are counted in rows of nInputs() + 2 per state: the end of input first,
+     * then symbols not in the input alphabet, then the input symbols by id
+     * @param table
+     * @param state
+     * @param input id of an input symbol, SymbolTable.NONE or END_OF_INPUT
+     * @return index of the count of rejects in the state at the input
+     */
+    static int rejectIndex(TransitionTable table, int state, int input) {
+        return state * (table.nInputs() + 2) + input + 2;
+    }
+
+    private static LongAdder[] adders(int n) {
+        LongAdder[] adders = new LongAdder[n];
+        for (int k = 0; k < n; k++) {
+            adders[k] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * @return a recorder for a new run
+     */
+    Run newRun() {
+        return new Run();
+    }
+
+    /**
+     * @param transition
+     * @return index of the compiled transition of a transition of the DPDA
+     */
+    int indexOf(DPDA.Transition transition) {
+        return indexes.get(transition);
+    }
+
+    private static long[] sums(LongAdder[] adders) {
+        long[] sums = new long[adders.length];
+        for (int k = 0; k < adders.length; k++) {
+            sums[k] = adders[k].sum();
+        }
+        return sums;
+    }
+
+    /**
+     * Reads the counters. Safe to call while runs update them
+     * @return a copy of the counters that does not change
+     */
+    public MetricsSnapshot snapshot() {
+        List<String> transitions = new ArrayList<>();
+        for (int k = 0; k < table.nTransitions(); k++) {
+            transitions.add(table.transition(k).source.toString());
+        }
+        return new MetricsSnapshot(table, transitions, sums(outcomes), sums(transitionHits),
+                sums(stateHits), sums(rejects), steps.snapshot(), maxStackDepth.snapshot(),
+                epsilonPercent.snapshot());
+    }
+}
@@ -0,0 +1,292 @@
+package edu.njit.cs314;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary snapshot of a validated DPDA, so that an automaton built once by many
+ * addTransition() calls can be loaded again without repeating their checks.
+ * All numbers are big-endian ints and symbols are written as ids of the symbol table:
+ * <pre>
+ * magic "DPDA", version
+ * nStates, startState, nAccept, accept states
+ * nSymbols, for ids 1 .. nSymbols: kind ('T', 'V', 'S' or 'L'), then the state
+ *     number for 'S' or the value as length and UTF-8 bytes otherwise
+ * nRules, for each rule: lhs, rhs length, rhs
+ * nTransitions, for each transition in compile order: currState, input, stack top
+ *     length, stack top, nextState, replacement length, replacement, number of rules,
+ *     rule indexes
+ * the tables of the compiled DPDA, see TransitionTable.writeTables() (version 2)
+ * CRC32 of everything before it
+ * </pre>
+ * Id 0 is epsilon and SymbolTable.WILDCARD stands for StateToken.WILDCARD.
+ * A snapshot is read from a memory-mapped file straight into the tables of the DPDA,
+ * which is compiled when loaded: the transitions are compiled from the ids in the file
+ * and the stack top decision trees and macro transitions, which take the most work to
+ * build, are read as they were written. Only the dense table of transitions which
+ * leave the stack alone is filled in again, in one pass over the transitions. Snapshots of version 1, which have no
+ * tables, are still read and compiled as usual.
+ * Date created: 10/18/26
+ */
+class DPDASnapshot {
+
+    private static final int MAGIC = 0x44504441; // "DPDA"
+    private static final int VERSION = 2;
+    // first version with the tables of the compiled DPDA
+    private static final int TABLES_VERSION = 2;
+
+    private static final byte TERMINAL = 'T';
+    private static final byte VARIABLE = 'V';
+    private static final byte STATE = 'S';
+    private static final byte LOOKAHEAD = 'L';
+
+    /**
+     * Writes a snapshot of the DPDA
+     * @param nStates
+     * @param startState
+     * @param acceptStates
+     * @param table the compiled DPDA
+     * @param file
+     */
+    public static void write(int nStates, int startState, Set<Integer> acceptStates,
+                             TransitionTable table, Path file) throws IOException {
+        SymbolTable symbols = table.symbols();
+        List<DPDA.Transition> transitions = new ArrayList<>();
+        for (int k = 0; k < table.nTransitions(); k++) {
+            transitions.add(table.transition(k).source);
+        }
+        CRC32 crc = new CRC32();
+        try (OutputStream stream = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(stream, crc));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(nStates);
+            out.writeInt(startState);
+            List<Integer> accept = new ArrayList<>(new TreeSet<>(acceptStates));
+            out.writeInt(accept.size());
+            for (int state : accept) {
+                out.writeInt(state);
+            }
+            out.writeInt(symbols.size() - 1);
+            for (int id = 1; id < symbols.size(); id++) {
+                StackToken token = symbols.symbol(id);
+                if (symbols.isState(id)) {
+                    out.writeByte(STATE);
+                    out.writeInt(((StateToken) token).state());
+                } else {
+                    out.writeByte(symbols.isTerminal(id) ? TERMINAL
+                            : symbols.isVariable(id) ? VARIABLE : LOOKAHEAD);
+                    String value = symbols.isLookAhead(id) ? token.value.substring(1) : token.value;
+                    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+            }
+            Map<DPDA.Rule,Integer> ruleIndex = new IdentityHashMap<>();
+            List<DPDA.Rule> rules = new ArrayList<>();
+            for (DPDA.Transition transition : transitions) {
+                if (transition.rulesForReduction != null) {
+                    for (DPDA.Rule rule : transition.rulesForReduction) {
+                        if (!ruleIndex.containsKey(rule)) {
+                            ruleIndex.put(rule, rules.size());
+                            rules.add(rule);
+                        }
+                    }
+                }
+            }
+            out.writeInt(rules.size());
+            for (DPDA.Rule rule : rules) {
+                out.writeInt(id(symbols, rule.lhs));
+                out.writeInt(rule.rhs.size());
+                for (GrammarToken token : rule.rhs) {
+                    out.writeInt(id(symbols, token));
+                }
+            }
+            out.writeInt(transitions.size());
+            for (DPDA.Transition transition : transitions) {
+                out.writeInt(transition.currState);
+                out.writeInt(id(symbols, transition.inputSymbol));
+                writeIds(out, symbols, transition.stackTop);
+                out.writeInt(transition.nextState);
+                writeIds(out, symbols, transition.stackTopReplacement);
+                List<DPDA.Rule> reductions = transition.rulesForReduction == null
+                        ? Collections.emptyList() : transition.rulesForReduction;
+                out.writeInt(reductions.size());
+                for (DPDA.Rule rule : reductions) {
+                    out.writeInt(ruleIndex.get(rule));
+                }
+            }
+            table.writeTables(out, ruleIndex);
+            out.flush();
+            // not part of the checksum
+            new DataOutputStream(stream).writeInt((int) crc.getValue());
+        }
+    }
+
+    private static int id(SymbolTable symbols, StackToken token) {
+        int id = symbols.id(token);
+        if (id == SymbolTable.NONE) {
+            throw new IllegalArgumentException("Symbol " + token + " is not in the symbol table");
+        }
+        return id;
+    }
+
+    private static void writeIds(DataOutputStream out, SymbolTable symbols,
+                                 List<StackToken> tokens) throws IOException {
+        out.writeInt(tokens.size());
+        for (StackToken token : tokens) {
+            out.writeInt(id(symbols, token));
+        }
+    }
+
+    /**
+     * Loads a snapshot written by write()
+     * @param file
+     * @return the compiled DPDA
+     * @throws IOException if the file cannot be read or is not a valid snapshot
+     */
+    public static DPDA read(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            return read(buffer);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | ClassCastException
+                | IllegalArgumentException | NegativeArraySizeException e) {
+            throw new IOException("Corrupt DPDA snapshot " + file + ": " + e, e);
+        }
+    }
+
+    private static DPDA read(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < 12 || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a DPDA snapshot");
+        }
+        int version = buffer.getInt(4);
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported DPDA snapshot version " + version);
+        }
+        int end = buffer.limit() - 4;
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().limit(end));
+        if ((int) crc.getValue() != buffer.getInt(end)) {
+            throw new IOException("DPDA snapshot checksum mismatch");
+        }
+        buffer.position(8).limit(end);
+
+        int nStates = buffer.getInt();
+        int startState = buffer.getInt();
+        Set<Integer> acceptStates = new HashSet<>();
+        for (int k = buffer.getInt(); k > 0; k--) {
+            acceptStates.add(buffer.getInt());
+        }
+        // symbols: the table is built from the terminals and variables, then the
+        // states and lookaheads it does not create itself are interned in id order
+        int nSymbols = buffer.getInt();
+        byte[] kinds = new byte[nSymbols + 1];
+        String[] values = new String[nSymbols + 1];
+        int[] stateNumbers = new int[nSymbols + 1];
+        Set<String> terminals = new HashSet<>();
+        Set<String> variables = new HashSet<>();
+        for (int id = 1; id <= nSymbols; id++) {
+            kinds[id] = buffer.get();
+            if (kinds[id] == STATE) {
+                stateNumbers[id] = buffer.getInt();
+            } else {
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                values[id] = new String(bytes, StandardCharsets.UTF_8);
+                if (kinds[id] == TERMINAL) {
+                    terminals.add(values[id]);
+                } else if (kinds[id] == VARIABLE) {
+                    variables.add(values[id]);
+                }
+            }
+        }
+        DPDA pda = new DPDA(nStates, startState, terminals, variables, acceptStates);
+        SymbolTable symbols = pda.symbols();
+        for (int id = 1; id <= nSymbols; id++) {
+            int interned;
+            if (kinds[id] == STATE) {
+                interned = symbols.state(stateNumbers[id]).id;
+            } else if (kinds[id] == LOOKAHEAD) {
+                interned = symbols.lookAhead(new TerminalToken(values[id])).id;
+            } else {
+                StackToken token = kinds[id] == TERMINAL ? symbols.terminal(values[id])
+                        : symbols.variable(values[id]);
+                interned = token == null ? SymbolTable.NONE : token.id;
+            }
+            if (interned != id) {
+                throw new IOException("DPDA snapshot symbol " + id + " does not match");
+            }
+        }
+
+        DPDA.Rule[] rules = new DPDA.Rule[buffer.getInt()];
+        for (int k = 0; k < rules.length; k++) {
+            VariableToken lhs = (VariableToken) symbols.symbol(buffer.getInt());
+            GrammarToken[] rhs = new GrammarToken[buffer.getInt()];
+            for (int m = 0; m < rhs.length; m++) {
+                rhs[m] = (GrammarToken) symbols.symbol(buffer.getInt());
+            }
+            rules[k] = new DPDA.Rule(lhs, Arrays.asList(rhs));
+        }
+
+        CompiledTransition[] compiled = new CompiledTransition[buffer.getInt()];
+        for (int k = 0; k < compiled.length; k++) {
+            int currState = buffer.getInt();
+            int input = buffer.getInt();
+            TerminalToken inputSymbol = (TerminalToken) symbols.symbol(input);
+            int[] pop = readIds(buffer);
+            int nextState = buffer.getInt();
+            int[] push = readIds(buffer);
+            List<DPDA.Rule> reductions = new ArrayList<>();
+            for (int m = buffer.getInt(); m > 0; m--) {
+                reductions.add(rules[buffer.getInt()]);
+            }
+            if (currState < 0 || currState >= nStates || nextState < 0 || nextState >= nStates) {
+                throw new IOException("DPDA snapshot transition has invalid state");
+            }
+            DPDA.Transition transition = new DPDA.Transition(currState, inputSymbol,
+                    tokens(pop, symbols), nextState, tokens(push, symbols), reductions);
+            pda.addValidatedTransition(transition);
+            compiled[k] = new CompiledTransition(transition, k, input, pop, push);
+        }
+        if (version >= TABLES_VERSION) {
+            pda.compile(new TransitionTable(nStates, symbols, acceptStates, compiled, rules,
+                    buffer));
+        }
+        if (buffer.hasRemaining()) {
+            throw new IOException("DPDA snapshot has trailing data");
+        }
+        pda.compile();
+        return pda;
+    }
+
+    private static int[] readIds(ByteBuffer buffer) {
+        int[] ids = new int[buffer.getInt()];
+        for (int k = 0; k < ids.length; k++) {
+            ids[k] = buffer.getInt();
+        }
+        return ids;
+    }
+
+    private static List<StackToken> tokens(int[] ids, SymbolTable symbols) {
+        if (ids.length == 0) {
+            return DPDA.EPSILON_STACK;
+        }
+        StackToken[] tokens = new StackToken[ids.length];
+        for (int k = 0; k < ids.length; k++) {
+            tokens[k] = ids[k] == SymbolTable.WILDCARD ? StateToken.WILDCARD
+                    : symbols.symbol(ids[k]);
+        }
+        return Arrays.asList(tokens);
+    }
+}
@@ -0,0 +1,24 @@
+package edu.njit.cs314;
+
+import jdk.jfr.*;
+
+/**
+ * JFR event for rebuilding and writing the rightmost derivation of an accepted input.
+ * Recorded from 1 ms unless the recording sets another threshold, like ParseEvent.
+ * Date created: 10/18/26
+ */
+@Name("edu.njit.cs314.Derivation")
+@Label("DPDA Derivation")
+@Category("DPDA")
+@Description("Reconstruction of a rightmost derivation from a trace")
+@Threshold("1 ms")
+class DerivationEvent extends Event {
+
+    @Label("Trace Length")
+    @Description("Number of configurations of the trace")
+    int traceLength;
+
+    @Label("Rules")
+    @Description("Number of rules applied by the derivation")
+    int rules;
+}
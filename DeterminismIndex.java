@@ -0,0 +1,182 @@
+package edu.njit.cs314;
+
+import java.util.*;
+
+/**
+ * Finds the transitions that would make a DPDA non-deterministic if a new transition
+ * were added, without comparing the new transition to every transition of its state.
+ * The stack tops of the transitions of each state are kept in a trie of symbol ids.
+ * Two stack tops conflict when one is a prefix of the other, where StateToken.WILDCARD
+ * matches any state, so the conflicting stack tops are the ones ending on the path of
+ * the new stack top and the ones below its end. Each node knows which input symbols
+ * occur below it, so subtrees without a conflicting input are skipped.
+ * Date created: 10/18/26
+ */
+class DeterminismIndex {
+
+    private static class Node {
+        public final Map<Integer,Node> children = new HashMap<>();
+        // input symbol id -> transitions whose stack top ends at this node
+        public final Map<Integer,List<DPDA.Transition>> ending = new HashMap<>();
+        // input symbol ids of transitions ending at this node or below
+        public final Set<Integer> inputsBelow = new HashSet<>();
+    }
+
+    private final SymbolTable symbols;
+    private final Map<Integer,Node> roots = new HashMap<>();
+
+    public DeterminismIndex(SymbolTable symbols) {
+        this.symbols = symbols;
+    }
+
+    /**
+     * Checks if the first stack top matches only stacks that the second one matches as well,
+     * i.e. both have the same length and the first has a state wherever they differ and the
+     * second has StateToken.WILDCARD. Such stack tops do not conflict, the more specific one
+     * is tried first
+     * @param stackTop1
+     * @param stackTop2
+     * @return true if stackTop1 is strictly more specific than stackTop2
+     */
+    public static boolean moreSpecific(List<StackToken> stackTop1,
+                                       List<StackToken> stackTop2) {
+        if (stackTop1.size() != stackTop2.size()) {
+            return false;
+        }
+        boolean specific = false;
+        for (int k = 0; k < stackTop1.size(); k++) {
+            StackToken token1 = stackTop1.get(k);
+            StackToken token2 = stackTop2.get(k);
+            if (token1 == StateToken.WILDCARD || token2 == StateToken.WILDCARD) {
+                if (token1 != StateToken.WILDCARD && token1 instanceof StateToken) {
+                    specific = true;
+                } else if (token1 != token2) {
+                    return false;
+                }
+            } else if (!token1.equals(token2)) {
+                return false;
+            }
+        }
+        return specific;
+    }
+
+    /**
+     * Finds all transitions of the same state that conflict with the given one.
+     * Transitions that leave the stack alone never conflict
+     * @param transition
+     * @return a description of each conflict, empty if there is none
+     */
+    public List<String> conflicts(DPDA.Transition transition) {
+        List<String> conflicts = new ArrayList<>();
+        Node root = roots.get(transition.currState);
+        if (root != null && !transition.stackTop.isEmpty()) {
+            int[] stackTop = symbols.internAll(transition.stackTop);
+            walk(root, stackTop, 0, symbols.id(transition.inputSymbol), transition, conflicts);
+        }
+        return conflicts;
+    }
+
+    private void walk(Node node, int[] stackTop, int depth, int input,
+                      DPDA.Transition transition, List<String> conflicts) {
+        if (depth == stackTop.length) {
+            collect(node, input, transition, conflicts);
+            return;
+        }
+        // stack tops that end here are a prefix of the new one
+        if (depth > 0) {
+            report(node, input, transition, conflicts);
+        }
+        int id = stackTop[depth];
+        if (id == SymbolTable.WILDCARD) {
+            for (Map.Entry<Integer,Node> child : node.children.entrySet()) {
+                if (child.getKey() == SymbolTable.WILDCARD || symbols.isState(child.getKey())) {
+                    walkChild(child.getValue(), stackTop, depth, input, transition, conflicts);
+                }
+            }
+        } else {
+            walkChild(node.children.get(id), stackTop, depth, input, transition, conflicts);
+            if (symbols.isState(id)) {
+                walkChild(node.children.get(SymbolTable.WILDCARD), stackTop, depth, input,
+                        transition, conflicts);
+            }
+        }
+    }
+
+    private void walkChild(Node child, int[] stackTop, int depth, int input,
+                           DPDA.Transition transition, List<String> conflicts) {
+        if (child != null && hasConflictingInput(child, input)) {
+            walk(child, stackTop, depth + 1, input, transition, conflicts);
+        }
+    }
+
+    /**
+     * Reports all stack tops ending at or below node, which have the new one as prefix
+     */
+    private void collect(Node node, int input, DPDA.Transition transition, List<String> conflicts) {
+        report(node, input, transition, conflicts);
+        for (Node child : node.children.values()) {
+            if (hasConflictingInput(child, input)) {
+                collect(child, input, transition, conflicts);
+            }
+        }
+    }
+
+    private static boolean hasConflictingInput(Node node, int input) {
+        if (input == SymbolTable.EPSILON) {
+            return !node.inputsBelow.isEmpty();
+        }
+        return node.inputsBelow.contains(SymbolTable.EPSILON) || node.inputsBelow.contains(input);
+    }
+
+    private static void report(Node node, int input, DPDA.Transition transition,
+                               List<String> conflicts) {
+        for (Map.Entry<Integer,List<DPDA.Transition>> entry : node.ending.entrySet()) {
+            int otherInput = entry.getKey();
+            if (otherInput != SymbolTable.EPSILON && input != SymbolTable.EPSILON
+                    && otherInput != input) {
+                continue;
+            }
+            for (DPDA.Transition other : entry.getValue()) {
+                if (otherInput == input && (moreSpecific(transition.stackTop, other.stackTop)
+                        || moreSpecific(other.stackTop, transition.stackTop))) {
+                    continue;
+                }
+                conflicts.add(describe(transition, other, input, otherInput));
+            }
+        }
+    }
+
+    private static String describe(DPDA.Transition transition, DPDA.Transition other,
+                                   int input, int otherInput) {
+        if (otherInput == SymbolTable.EPSILON) {
+            return "Epsilon input/epsilon stack transition already exists for state "
+                    + transition.currState + ":" + other;
+        }
+        if (input == SymbolTable.EPSILON) {
+            return "Cannot add epsilon input/epsilon transition for state "
+                    + transition.currState + " when transition for " + other.inputSymbol
+                    + " already exists: " + other;
+        }
+        return "Cannot add epsilon stack transition for state "
+                + transition.currState + " when epsilon transition for " + other.inputSymbol
+                + " already exists: " + other;
+    }
+
+    /**
+     * Adds the stack top of the transition to the trie of its state
+     * @param transition
+     */
+    public void add(DPDA.Transition transition) {
+        if (transition.stackTop.isEmpty()) {
+            return;
+        }
+        int input = symbols.id(transition.inputSymbol);
+        Node node = roots.computeIfAbsent(transition.currState, state -> new Node());
+        node.inputsBelow.add(input);
+        for (int id : symbols.internAll(transition.stackTop)) {
+            node = node.children.computeIfAbsent(id, key -> new Node());
+            node.inputsBelow.add(input);
+        }
+        node.ending.computeIfAbsent(input, key -> new ArrayList<>()).add(transition);
+    }
+}
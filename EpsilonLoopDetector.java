@@ -0,0 +1,112 @@
+package edu.njit.cs314;
+
+/**
+ * Detects a run of epsilon moves that will repeat for ever. Between two input symbols
+ * the steps of a DPDA depend only on the state and the top of the stack, so if the
+ * run comes back to a state with the stack at least as high, and the symbols that the
+ * steps in between could read are the same as before, the run is in a cycle.
+ * Configurations are saved after 1, 2, 4, 8, ... steps (Brent's method), so any cycle
+ * is found within a few periods while a step costs a few comparisons. Saving only
+ * notes the state and stack size; the top of the stack is copied when the run first
+ * comes back to the saved state, so runs that do not revisit a state, which are
+ * nearly all of them, never copy the stack.
+ * A cycle that reaches deeper into the stack than the saved window is not detected;
+ * the step and stack limits of RunLimits still stop it.
+ * Date created: 10/18/26
+ */
+class EpsilonLoopDetector {
+
+    // most symbols below the top that a step can inspect
+    private final int reach;
+    // top of the stack at the saved configuration, saved[0] is the top
+    private final int[] saved;
+    private int savedState;
+    private int savedSize;
+    private int savedLength;
+    // false until saved holds the top of the stack at the saved configuration
+    private boolean copied;
+    // lowest stack size since the configuration was saved
+    private int lowest;
+    private int interval;
+    private int sinceSaved;
+
+    /**
+     * @param reach length of the longest stack top of the automaton
+     */
+    public EpsilonLoopDetector(int reach) {
+        this.reach = reach;
+        this.saved = new int[Math.max(64, 4 * reach)];
+        reset();
+    }
+
+    /**
+     * Starts a new run of epsilon moves, e.g. after an input symbol was consumed
+     */
+    public void reset() {
+        savedState = -1;
+        interval = 1;
+        sinceSaved = 0;
+    }
+
+    /**
+     * Records an epsilon move
+     * @param state state after the move
+     * @param stack stack after the move
+     * @param base size of the stack after the move popped its stack top
+     * @return true if the run is in a cycle
+     */
+    public boolean step(int state, IntStack stack, int base) {
+        if (savedState < 0) {
+            save(state, stack);
+            return false;
+        }
+        lowest = Math.min(lowest, base);
+        int size = stack.size();
+        if (state == savedState && size >= savedSize) {
+            if (!copied) {
+                copy(state, stack);
+                return false;
+            }
+            int depth = savedSize - Math.max(lowest - reach, 0);
+            if (depth <= savedLength && sameTop(stack, depth)) {
+                return true;
+            }
+        }
+        if (++sinceSaved == interval) {
+            save(state, stack);
+            if (interval < (1 << 30)) {
+                interval <<= 1;
+            }
+        }
+        return false;
+    }
+
+    private boolean sameTop(IntStack stack, int depth) {
+        for (int k = 0; k < depth; k++) {
+            if (stack.peek(k) != saved[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void save(int state, IntStack stack) {
+        savedState = state;
+        savedSize = stack.size();
+        copied = false;
+        lowest = savedSize;
+        sinceSaved = 0;
+    }
+
+    /**
+     * Saves the configuration with a copy of the top of the stack
+     */
+    private void copy(int state, IntStack stack) {
+        save(state, stack);
+        savedLength = Math.min(savedSize, saved.length);
+        for (int k = 0; k < savedLength; k++) {
+            saved[k] = stack.peek(k);
+        }
+        copied = true;
+    }
+}
@@ -0,0 +1,93 @@
+package edu.njit.cs314;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * List backed by an array with a gap of free slots at the place it was last edited.
+ * A replacement moves the gap to the edit and fills it, so it costs the tokens
+ * removed and inserted and the distance from the previous edit, not a shift of every
+ * element after it as in an ArrayList. Used for the input of IncrementalParser, whose
+ * edits tend to be close to each other.
+ * Date created: 10/18/26
+ */
+class GapBuffer<T> extends AbstractList<T> {
+
+    private Object[] items;
+    private int gapStart;
+    private int gapEnd;
+
+    public GapBuffer(List<? extends T> elements) {
+        items = new Object[Math.max(16, 2 * elements.size())];
+        for (T element : elements) {
+            items[gapStart++] = element;
+        }
+        gapEnd = items.length;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index + " of " + size() + " elements");
+        }
+        return (T) items[index < gapStart ? index : index + gapEnd - gapStart];
+    }
+
+    @Override
+    public int size() {
+        return items.length - (gapEnd - gapStart);
+    }
+
+    /**
+     * Replaces removed elements at from by the inserted ones
+     * @param from
+     * @param removed
+     * @param inserted
+     */
+    public void replace(int from, int removed, List<? extends T> inserted) {
+        if (from < 0 || removed < 0 || from + removed > size()) {
+            throw new IndexOutOfBoundsException("Replacing " + removed + " elements at " + from
+                    + " of " + size());
+        }
+        moveGap(from);
+        Arrays.fill(items, gapEnd, gapEnd + removed, null);
+        gapEnd += removed;
+        if (gapEnd - gapStart < inserted.size()) {
+            grow(inserted.size());
+        }
+        for (T element : inserted) {
+            items[gapStart++] = element;
+        }
+        modCount++;
+    }
+
+    private void moveGap(int index) {
+        if (index < gapStart) {
+            int count = gapStart - index;
+            System.arraycopy(items, index, items, gapEnd - count, count);
+            Arrays.fill(items, index, Math.min(gapStart, gapEnd - count), null);
+            gapStart = index;
+            gapEnd -= count;
+        } else if (index > gapStart) {
+            int count = index - gapStart;
+            System.arraycopy(items, gapEnd, items, gapStart, count);
+            Arrays.fill(items, Math.max(gapEnd, gapStart + count), gapEnd + count, null);
+            gapStart += count;
+            gapEnd += count;
+        }
+    }
+
+    /**
+     * Makes the gap hold at least needed elements
+     */
+    private void grow(int needed) {
+        int tail = items.length - gapEnd;
+        Object[] grown = new Object[Math.max(2 * items.length, size() + needed + 16)];
+        System.arraycopy(items, 0, grown, 0, gapStart);
+        System.arraycopy(items, gapEnd, grown, grown.length - tail, tail);
+        items = grown;
+        gapEnd = grown.length - tail;
+    }
+}
@@ -0,0 +1,511 @@
+package edu.njit.cs314;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.*;
+import javax.tools.*;
+
+/**
+ * A compiled DPDA turned into Java code of its own, so that the JIT sees the automaton
+ * itself instead of an interpreter walking its tables. The generated class has a
+ * method for each state that tries the transitions of the state in the order of
+ * TransitionTable.next(), with a method for each node of the stack top decision tree
+ * of StackTopTrie, so the stack top checks are comparisons against constants, and a
+ * method for each state that applies the pops and pushes of its transitions in place
+ * on an int array. Switches over states or symbols are split into a tree of methods
+ * of at most FAN_OUT cases, so that no method grows with the automaton: a method must
+ * stay under 64KB of bytecode to compile, and under 8000 bytes for the JIT to compile
+ * it. Each run is an instance of the generated class, whose fields hold the stack,
+ * state and input position. The source is compiled by the system Java compiler into memory and loaded as
+ * a hidden class, which is unloaded with this object. A run does what process() does,
+ * step for step, without recording configurations.
+ * Generating code needs a JDK, and the classes of this package on the class path.
+ * Date created: 10/18/26
+ */
+public class GeneratedDPDA {
+
+    private static final String CLASS_NAME = "GeneratedAutomaton";
+    // largest number of cases of a switch in the generated code
+    private static final int FAN_OUT = 256;
+
+    private static class Node {
+        public final Map<Integer,Node> children = new LinkedHashMap<>();
+        public Node wildcard;
+        public CompiledTransition ending;
+        public int number;
+        public int depth; // number of stack symbols matched above the node
+    }
+
+    private final TransitionTable table;
+    private final GeneratedRecognizer recognizer;
+    // Java source of the generated class
+    public final String source;
+
+    private GeneratedDPDA(TransitionTable table, GeneratedRecognizer recognizer, String source) {
+        this.table = table;
+        this.recognizer = recognizer;
+        this.source = source;
+    }
+
+    /**
+     * Generates, compiles and loads the code of a compiled DPDA
+     * @param table
+     * @param startState
+     * @return the generated DPDA
+     * @throws IllegalStateException if there is no Java compiler or the code does not compile
+     */
+    static GeneratedDPDA generate(TransitionTable table, int startState) {
+        String source = new Generator(table, startState).generate();
+        byte[] bytes = compile(source);
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            GeneratedRecognizer recognizer = (GeneratedRecognizer) lookup.findConstructor(
+                    lookup.lookupClass(), MethodType.methodType(void.class)).invoke();
+            return new GeneratedDPDA(table, recognizer, source);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Cannot load generated DPDA: " + e, e);
+        }
+    }
+
+    /**
+     * Runs the generated code on the input
+     * @param input
+     * @return the result, with the steps, final state and acceptance process() would give
+     */
+    public RecognitionResult accepts(List<TerminalToken> input) {
+        return recognizer.run(inputIds(input), null);
+    }
+
+    /**
+     * @param input
+     * @return the index of the compiled transition of each step of the run
+     */
+    int[] steps(List<TerminalToken> input) {
+        IntStack trace = new IntStack();
+        recognizer.run(inputIds(input), trace);
+        int[] steps = new int[trace.size()];
+        for (int k = 0; k < steps.length; k++) {
+            steps[k] = trace.peek(steps.length - 1 - k);
+        }
+        return steps;
+    }
+
+    private int[] inputIds(List<TerminalToken> input) {
+        int[] ids = new int[input.size()];
+        for (int k = 0; k < ids.length; k++) {
+            ids[k] = table.inputId(input.get(k));
+        }
+        return ids;
+    }
+
+    /**
+     * Compiles the source of the generated class in memory
+     * @param source
+     * @return the class file
+     */
+    private static byte[] compile(String source) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("No Java compiler available, generating code needs a JDK");
+        }
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        Map<String,ByteArrayOutputStream> classes = new HashMap<>();
+        StandardJavaFileManager files = compiler.getStandardFileManager(diagnostics, null,
+                StandardCharsets.UTF_8);
+        JavaFileManager manager = new ForwardingJavaFileManager<JavaFileManager>(files) {
+            @Override
+            public JavaFileObject getJavaFileForOutput(Location location, String className,
+                                                       JavaFileObject.Kind kind, FileObject sibling) {
+                return new SimpleJavaFileObject(URI.create("mem:///"
+                        + className.replace('.', '/') + kind.extension), kind) {
+                    @Override
+                    public OutputStream openOutputStream() {
+                        ByteArrayOutputStream out = new ByteArrayOutputStream();
+                        classes.put(className, out);
+                        return out;
+                    }
+                };
+            }
+        };
+        JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///"
+                + GeneratedDPDA.class.getPackageName().replace('.', '/') + "/" + CLASS_NAME
+                + JavaFileObject.Kind.SOURCE.extension), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+        List<String> options = Arrays.asList("-classpath", classPath(), "-proc:none");
+        boolean compiled = compiler.getTask(null, manager, diagnostics, options, null,
+                Collections.singletonList(file)).call();
+        String name = GeneratedDPDA.class.getPackageName() + "." + CLASS_NAME;
+        if (!compiled || classes.size() != 1 || !classes.containsKey(name)) {
+            throw new IllegalStateException("Generated DPDA does not compile: "
+                    + diagnostics.getDiagnostics());
+        }
+        return classes.get(name).toByteArray();
+    }
+
+    /**
+     * @return the class path, with the location of the classes of this package first
+     */
+    private static String classPath() {
+        String classPath = System.getProperty("java.class.path", "");
+        try {
+            String own = Paths.get(GeneratedDPDA.class.getProtectionDomain().getCodeSource()
+                    .getLocation().toURI()).toString();
+            return classPath.isEmpty() ? own : own + File.pathSeparator + classPath;
+        } catch (Exception e) {
+            return classPath;
+        }
+    }
+
+    /**
+     * Writes the source of the generated class
+     */
+    private static class Generator {
+        private final TransitionTable table;
+        private final int startState;
+        private final int nInputs;
+        private final StringBuilder out = new StringBuilder();
+        private final List<Node> nodes = new ArrayList<>();
+
+        public Generator(TransitionTable table, int startState) {
+            this.table = table;
+            this.startState = startState;
+            this.nInputs = table.nInputs();
+        }
+
+        public String generate() {
+            int nStates = table.nStates();
+            // the slots of TransitionTable: transitions which leave the stack alone, first
+            // one wins, and decision trees of the others in the order of StackTopTrie
+            CompiledTransition[] byEpsilonStack = new CompiledTransition[nStates * nInputs];
+            Node[] roots = new Node[nStates * nInputs];
+            for (int k = 0; k < table.nTransitions(); k++) {
+                CompiledTransition transition = table.transition(k);
+                int slot = transition.currState * nInputs + transition.input;
+                if (transition.pop.length == 0) {
+                    if (byEpsilonStack[slot] == null) {
+                        byEpsilonStack[slot] = transition;
+                    }
+                } else {
+                    if (roots[slot] == null) {
+                        roots[slot] = newNode(0);
+                    }
+                    insert(roots[slot], transition);
+                }
+            }
+
+            line(0, "package " + GeneratedDPDA.class.getPackageName() + ";");
+            line(0, "");
+            line(0, "final class " + CLASS_NAME + " implements GeneratedRecognizer {");
+            line(0, "");
+            line(1, "private int[] s = new int[16];");
+            line(1, "private int sp;");
+            line(1, "private int state = " + startState + ";");
+            line(1, "private int i;");
+            line(0, "");
+            runMethod();
+            String[] steps = new String[nStates];
+            for (int state = 0; state < nStates; state++) {
+                steps[state] = "return state" + state + "(in);";
+            }
+            switchMethod("int", "step", ", int in", ", in", steps, "return -1;");
+            for (int state = 0; state < nStates; state++) {
+                stateMethod(state);
+                nextMethod(state, byEpsilonStack, roots);
+            }
+            for (Node node : nodes) {
+                nodeMethod(node);
+            }
+            String[] accepting = new String[nStates];
+            for (int state = 0; state < nStates; state++) {
+                if (table.isAccepting(state)) {
+                    accepting[state] = "return true;";
+                }
+            }
+            switchMethod("boolean", "isAccepting", "", "", accepting, "return false;");
+            SymbolTable symbols = table.symbols();
+            String[] states = new String[symbols.size()];
+            for (int id = 0; id < states.length; id++) {
+                if (symbols.isState(id)) {
+                    states[id] = "return true;";
+                }
+            }
+            switchMethod("boolean", "isState", "", "", states, "return false;");
+            line(0, "}");
+            return out.toString();
+        }
+
+        private Node newNode(int depth) {
+            Node node = new Node();
+            node.number = nodes.size();
+            node.depth = depth;
+            nodes.add(node);
+            return node;
+        }
+
+        private void insert(Node root, CompiledTransition transition) {
+            Node node = root;
+            for (int id : transition.pop) {
+                Node child = id == SymbolTable.WILDCARD ? node.wildcard : node.children.get(id);
+                if (child == null) {
+                    child = newNode(node.depth + 1);
+                    if (id == SymbolTable.WILDCARD) {
+                        node.wildcard = child;
+                    } else {
+                        node.children.put(id, child);
+                    }
+                }
+                node = child;
+            }
+            if (node.ending == null) {
+                node.ending = transition;
+            }
+        }
+
+        private void runMethod() {
+            line(1, "public RecognitionResult run(int[] input, IntStack trace) {");
+            line(2, "return new " + CLASS_NAME + "().recognize(input, trace);");
+            line(1, "}");
+            line(0, "");
+            line(1, "private RecognitionResult recognize(int[] input, IntStack trace) {");
+            line(2, "int n = input.length;");
+            line(2, "int steps = 0;");
+            line(2, "while (i < n || sp > 1) {");
+            line(3, "int t = step(state, i < n ? input[i] : " + SymbolTable.NONE + ");");
+            line(3, "if (t < 0) {");
+            line(4, "return new RecognitionResult(RecognitionResult.Outcome.REJECTED, steps, i, state);");
+            line(3, "}");
+            line(3, "if (trace != null) {");
+            line(4, "trace.push(t);");
+            line(3, "}");
+            line(3, "steps++;");
+            line(2, "}");
+            line(2, "return new RecognitionResult(steps > 0 && isAccepting(state)");
+            line(4, "? RecognitionResult.Outcome.ACCEPTED : RecognitionResult.Outcome.REJECTED,");
+            line(4, "steps, i, state);");
+            line(1, "}");
+            line(0, "");
+        }
+
+        /**
+         * Writes a method that finds the transition of the next step from the state and
+         * makes the step, returning the index of the transition or -1 if there is none
+         */
+        private void stateMethod(int state) {
+            line(1, "private int state" + state + "(int in) {");
+            line(2, "int t = next" + state + "(in, s, sp);");
+            line(2, "switch (t) {");
+            for (int k = 0; k < table.nTransitions(); k++) {
+                CompiledTransition transition = table.transition(k);
+                if (transition.currState != state) {
+                    continue;
+                }
+                line(3, "case " + k + ": // " + comment(transition.source.toString()));
+                if (transition.pop.length > 0) {
+                    line(4, "sp -= " + transition.pop.length + ";");
+                }
+                int[] push = transition.push;
+                if (push.length > 0) {
+                    line(4, "if (sp + " + push.length + " > s.length) {");
+                    line(5, "s = java.util.Arrays.copyOf(s, 2 * s.length + " + push.length + ");");
+                    line(4, "}");
+                    // push[0] ends up on top
+                    for (int m = push.length - 1; m >= 0; m--) {
+                        line(4, "s[sp + " + (push.length - 1 - m) + "] = " + push[m] + ";");
+                    }
+                    line(4, "sp += " + push.length + ";");
+                }
+                line(4, "state = " + transition.nextState + ";");
+                if (transition.input != SymbolTable.EPSILON) {
+                    line(4, "i++;");
+                }
+                line(4, "return t;");
+            }
+            line(3, "default: return -1;");
+            line(2, "}");
+            line(1, "}");
+            line(0, "");
+        }
+
+        /**
+         * Writes a method that switches on an int key, cases[key] being the code of a
+         * case or null if the key takes the default. With more than FAN_OUT keys the
+         * switch is on key / span and each case calls a method of the same kind for its
+         * range of keys
+         * @param type return type
+         * @param name
+         * @param parameters parameters after the key, each with a leading comma
+         * @param arguments the parameters as passed on to the methods for the ranges
+         * @param cases
+         * @param otherwise code of the default case
+         */
+        private void switchMethod(String type, String name, String parameters, String arguments,
+                                  String[] cases, String otherwise) {
+            switchMethod(type, name, parameters, arguments, cases, otherwise, 0, cases.length);
+        }
+
+        private void switchMethod(String type, String name, String parameters, String arguments,
+                                  String[] cases, String otherwise, int from, int to) {
+            int span = 1;
+            while ((long) span * FAN_OUT < to - from) {
+                span *= FAN_OUT;
+            }
+            List<Integer> ranges = new ArrayList<>();
+            line(1, "private " + type + " " + name + "(int key" + parameters + ") {");
+            line(2, "switch (key" + (span > 1 ? " / " + span : "") + ") {");
+            for (int key = from / span; key * span < to; key++) {
+                if (span == 1) {
+                    if (cases[key] != null) {
+                        line(3, "case " + key + ": " + cases[key]);
+                    }
+                } else if (hasCase(cases, key * span, Math.min(to, (key + 1) * span))) {
+                    line(3, "case " + key + ": return " + name + "_" + key + "(key" + arguments + ");");
+                    ranges.add(key);
+                }
+            }
+            line(3, "default: " + otherwise);
+            line(2, "}");
+            line(1, "}");
+            line(0, "");
+            for (int key : ranges) {
+                switchMethod(type, name + "_" + key, parameters, arguments, cases, otherwise,
+                        key * span, Math.min(to, (key + 1) * span));
+            }
+        }
+
+        private static boolean hasCase(String[] cases, int from, int to) {
+            for (int key = from; key < to; key++) {
+                if (cases[key] != null) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Tries epsilon input/epsilon stack, input symbol/epsilon stack, epsilon
+         * input/stack top and input symbol/stack top, as TransitionTable.next()
+         */
+        private void nextMethod(int state, CompiledTransition[] byEpsilonStack, Node[] roots) {
+            int base = state * nInputs;
+            line(1, "private int next" + state + "(int in, int[] s, int sp) {");
+            if (byEpsilonStack[base + SymbolTable.EPSILON] != null) {
+                line(2, "return " + byEpsilonStack[base + SymbolTable.EPSILON].index + ";");
+                line(1, "}");
+                line(0, "");
+                return;
+            }
+            List<String> cases = new ArrayList<>();
+            for (int input = 1; input < nInputs; input++) {
+                if (byEpsilonStack[base + input] != null) {
+                    cases.add("case " + input + ": return " + byEpsilonStack[base + input].index + ";");
+                }
+            }
+            inputSwitch(cases);
+            if (roots[base + SymbolTable.EPSILON] != null) {
+                line(2, "int r = node" + roots[base + SymbolTable.EPSILON].number + "(s, sp);");
+                line(2, "if (r >= 0) {");
+                line(3, "return r;");
+                line(2, "}");
+            }
+            cases.clear();
+            for (int input = 1; input < nInputs; input++) {
+                if (roots[base + input] != null) {
+                    cases.add("case " + input + ": return node" + roots[base + input].number
+                            + "(s, sp);");
+                }
+            }
+            inputSwitch(cases);
+            line(2, "return -1;");
+            line(1, "}");
+            line(0, "");
+        }
+
+        private void inputSwitch(List<String> cases) {
+            if (cases.isEmpty()) {
+                return;
+            }
+            line(2, "switch (in) {");
+            for (String c : cases) {
+                line(3, c);
+            }
+            line(2, "}");
+        }
+
+        /**
+         * Matches the stack below the depth of the node as StackTopTrie.match(): the
+         * edge for the symbol first and then the wildcard edge for a state
+         */
+        private void nodeMethod(Node node) {
+            int depth = node.depth;
+            line(1, "private int node" + node.number + "(int[] s, int sp) {");
+            if (node.ending != null) {
+                line(2, "return " + node.ending.index + ";");
+                line(1, "}");
+                line(0, "");
+                return;
+            }
+            line(2, "if (sp <= " + depth + ") {");
+            line(3, "return -1;");
+            line(2, "}");
+            line(2, "int id = s[sp - " + (depth + 1) + "];");
+            if (!node.children.isEmpty()) {
+                line(2, "int r = -1;");
+                line(2, "switch (id) {");
+                for (Map.Entry<Integer,Node> child : node.children.entrySet()) {
+                    line(3, "case " + child.getKey() + ": r = node" + child.getValue().number
+                            + "(s, sp); break;");
+                }
+                line(2, "}");
+                line(2, "if (r >= 0) {");
+                line(3, "return r;");
+                line(2, "}");
+            }
+            if (node.wildcard != null) {
+                line(2, "return isState(id) ? node" + node.wildcard.number + "(s, sp) : -1;");
+            } else {
+                line(2, "return -1;");
+            }
+            line(1, "}");
+            line(0, "");
+        }
+
+        /**
+         * @param text
+         * @return the text made safe to end a // comment: on one line, in printable ASCII,
+         * and with backslashes doubled, so that javac reads no unicode escape from it
+         */
+        private static String comment(String text) {
+            StringBuilder comment = new StringBuilder(text.length());
+            for (int k = 0; k < text.length(); k++) {
+                char c = text.charAt(k);
+                if (c == '\\') {
+                    comment.append("\\\\");
+                } else if (c < ' ' || c > '~') {
+                    comment.append('?');
+                } else {
+                    comment.append(c);
+                }
+            }
+            return comment.toString();
+        }
+
+        private void line(int indent, String text) {
+            for (int k = 0; k < indent; k++) {
+                out.append("    ");
+            }
+            out.append(text).append('\n');
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package edu.njit.cs314;
+
+/**
+ * Run loop of a DPDA compiled into a class of its own by GeneratedDPDA
+ * Date created: 10/18/26
+ */
+interface GeneratedRecognizer {
+
+    /**
+     * Runs the DPDA on the input the way process() does
+     * @param input ids of the input symbols, SymbolTable.NONE for a symbol not in the alphabet
+     * @param trace receives the index of the transition of each step, may be null
+     * @return the result of the run
+     */
+    RecognitionResult run(int[] input, IntStack trace);
+}
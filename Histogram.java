@@ -0,0 +1,89 @@
+package edu.njit.cs314;
+
+/**
+ * Fixed-size histogram of non-negative long values (e.g. latencies in nanoseconds).
+ * Values are kept in logarithmic buckets with 8 linear sub-buckets per power of two,
+ * so percentiles are accurate to about 12% whatever the number of values recorded.
+ * Not thread-safe; record into one histogram per thread and merge them.
+ * Date created: 10/18/26
+ */
+public class Histogram {
+
+    static final int N_BUCKETS = 16 + 60 * 8;
+
+    private final long[] counts = new long[N_BUCKETS];
+    private long total;
+    private long max;
+
+    public Histogram() {
+    }
+
+    /**
+     * Creates a histogram from counts kept elsewhere
+     * @param counts number of values in each bucket, as numbered by bucket()
+     * @param max largest value recorded
+     */
+    Histogram(long[] counts, long max) {
+        for (int k = 0; k < N_BUCKETS; k++) {
+            this.counts[k] = counts[k];
+            total += counts[k];
+        }
+        this.max = max;
+    }
+
+    static int bucket(long value) {
+        if (value < 16) {
+            return (int) Math.max(value, 0);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - 3)) & 7;
+        return 16 + (exponent - 4) * 8 + sub;
+    }
+
+    private static long lowerBound(int bucket) {
+        if (bucket < 16) {
+            return bucket;
+        }
+        int exponent = (bucket - 16) / 8 + 4;
+        int sub = (bucket - 16) % 8;
+        return (long) (8 + sub) << (exponent - 3);
+    }
+
+    public void record(long value) {
+        counts[bucket(value)]++;
+        total++;
+        max = Math.max(max, value);
+    }
+
+    public void add(Histogram other) {
+        for (int k = 0; k < N_BUCKETS; k++) {
+            counts[k] += other.counts[k];
+        }
+        total += other.total;
+        max = Math.max(max, other.max);
+    }
+
+    public long count() {
+        return total;
+    }
+
+    public long max() {
+        return max;
+    }
+
+    /**
+     * @param fraction between 0 and 1, e.g. 0.99 for the 99th percentile
+     * @return lower bound of the bucket holding the value at that fraction, 0 if empty
+     */
+    public long percentile(double fraction) {
+        long rank = (long) Math.ceil(fraction * total);
+        long seen = 0;
+        for (int k = 0; k < N_BUCKETS; k++) {
+            seen += counts[k];
+            if (seen >= rank && seen > 0) {
+                return lowerBound(k);
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,317 @@
+package edu.njit.cs314;
+
+import java.util.*;
+
+/**
+ * A document checked by a DPDA that is re-checked after each edit without running the
+ * DPDA over all of it again. A run takes the steps of process() and records a checkpoint
+ * of its configuration (state, input index and stack) every interval steps; the stack
+ * is a PersistentStack, so a checkpoint only keeps a reference to it.
+ * reparse() resumes from the last checkpoint before the edited tokens. Once the new run
+ * is past the edit, every configuration is compared with the checkpoints the previous
+ * run had at the same place in the unedited input. At the first one that is the same,
+ * the rest of the run would be the same as before, so the new run stops there and takes
+ * the outcome and remaining checkpoints of the previous run. The steps of a reparse
+ * therefore grow with the size of the edit and the interval, not with the document.
+ * The input is a GapBuffer and the checkpoints are kept the same way, with a gap at the
+ * last edit and the step and input index of the checkpoints after it stored relative
+ * to a shift, so taking over the rest of the previous run only changes the shift.
+ * Besides the steps, a reparse costs the depth of the stack it resumes from and the
+ * distance of the edit from the previous one, over which both gaps are moved.
+ * Created by DPDA.parseIncrementally().
+ * Date created: 10/18/26
+ */
+public class IncrementalParser {
+
+    /**
+     * Checkpoints in the order of the run, in parallel arrays with a gap at the last
+     * edit. Checkpoints before the gap hold their step and input index, the ones after it
+     * hold them less stepShift and indexShift
+     */
+    private static class Checkpoints {
+        private int[] steps = new int[16];
+        private int[] states = new int[16];
+        private int[] inputIndexes = new int[16];
+        private PersistentStack[] stacks = new PersistentStack[16];
+        private int gapStart;
+        private int gapEnd = 16;
+        private int stepShift;
+        private int indexShift;
+
+        public int size() {
+            return steps.length - (gapEnd - gapStart);
+        }
+
+        /**
+         * @return index of the first checkpoint after the gap
+         */
+        public int afterGap() {
+            return gapStart;
+        }
+
+        private int slot(int k) {
+            return k < gapStart ? k : k + gapEnd - gapStart;
+        }
+
+        public int step(int k) {
+            int slot = slot(k);
+            return slot < gapStart ? steps[slot] : steps[slot] + stepShift;
+        }
+
+        public int state(int k) {
+            return states[slot(k)];
+        }
+
+        public int inputIndex(int k) {
+            int slot = slot(k);
+            return slot < gapStart ? inputIndexes[slot] : inputIndexes[slot] + indexShift;
+        }
+
+        public PersistentStack stack(int k) {
+            return stacks[slot(k)];
+        }
+
+        /**
+         * @param index
+         * @return the last checkpoint with an input index below index, 0 if none
+         */
+        public int lastBefore(int index) {
+            int low = 0;
+            int high = size() - 1;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (inputIndex(middle) < index) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Moves the gap to before checkpoint k, so that add() inserts there
+         * @param k
+         */
+        public void moveGap(int k) {
+            if (gapStart == gapEnd) {
+                grow();
+            }
+            while (gapStart > k) {
+                gapStart--;
+                gapEnd--;
+                move(gapStart, gapEnd, -stepShift, -indexShift);
+            }
+            while (gapStart < k) {
+                move(gapEnd, gapStart, stepShift, indexShift);
+                gapStart++;
+                gapEnd++;
+            }
+        }
+
+        private void move(int from, int to, int stepChange, int indexChange) {
+            steps[to] = steps[from] + stepChange;
+            states[to] = states[from];
+            inputIndexes[to] = inputIndexes[from] + indexChange;
+            stacks[to] = stacks[from];
+            stacks[from] = null;
+        }
+
+        /**
+         * Inserts a checkpoint at the gap
+         */
+        public void add(int step, int state, int inputIndex, PersistentStack stack) {
+            if (gapStart == gapEnd) {
+                grow();
+            }
+            steps[gapStart] = step;
+            states[gapStart] = state;
+            inputIndexes[gapStart] = inputIndex;
+            stacks[gapStart] = stack;
+            gapStart++;
+        }
+
+        private void grow() {
+            int tail = steps.length - gapEnd;
+            int capacity = 2 * steps.length;
+            steps = grow(steps, capacity, tail);
+            states = grow(states, capacity, tail);
+            inputIndexes = grow(inputIndexes, capacity, tail);
+            PersistentStack[] grown = new PersistentStack[capacity];
+            System.arraycopy(stacks, 0, grown, 0, gapStart);
+            System.arraycopy(stacks, gapEnd, grown, capacity - tail, tail);
+            stacks = grown;
+            gapEnd = capacity - tail;
+        }
+
+        private int[] grow(int[] values, int capacity, int tail) {
+            int[] grown = new int[capacity];
+            System.arraycopy(values, 0, grown, 0, gapStart);
+            System.arraycopy(values, gapEnd, grown, capacity - tail, tail);
+            return grown;
+        }
+
+        /**
+         * Removes the checkpoints after the gap up to, not including, checkpoint k, and
+         * changes the steps and input indexes of the rest
+         * @param k index of a checkpoint after the gap, or size() to remove all of them
+         * @param stepChange
+         * @param indexChange
+         */
+        public void dropUntil(int k, int stepChange, int indexChange) {
+            int end = k == size() ? steps.length : slot(k);
+            Arrays.fill(stacks, gapEnd, end, null);
+            gapEnd = end;
+            stepShift += stepChange;
+            indexShift += indexChange;
+        }
+    }
+
+    private final TransitionTable table;
+    private final int interval;
+    private final GapBuffer<TerminalToken> input;
+    private final Checkpoints checkpoints = new Checkpoints();
+    private RecognitionResult result;
+    private int stepsRun;
+
+    /**
+     * Runs the DPDA on the input, recording checkpoints
+     * @param table
+     * @param startState
+     * @param input
+     * @param interval number of steps between checkpoints
+     */
+    IncrementalParser(TransitionTable table, int startState, List<TerminalToken> input,
+                      int interval) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Checkpoint interval must be positive: " + interval);
+        }
+        this.table = table;
+        this.interval = interval;
+        this.input = new GapBuffer<>(input);
+        checkpoints.add(0, startState, 0, PersistentStack.EMPTY);
+        result = run(0, Integer.MAX_VALUE, 0, null);
+    }
+
+    /**
+     * @return outcome of the run on the current input
+     */
+    public RecognitionResult result() {
+        return result;
+    }
+
+    /**
+     * @return the current input, which cannot be changed but by reparse()
+     */
+    public List<TerminalToken> input() {
+        return Collections.unmodifiableList(input);
+    }
+
+    /**
+     * @return number of steps taken by the last parse or reparse
+     */
+    public int stepsRun() {
+        return stepsRun;
+    }
+
+    /**
+     * @return number of checkpoints kept
+     */
+    public int checkpoints() {
+        return checkpoints.size();
+    }
+
+    /**
+     * Replaces removed tokens at from by the inserted ones and checks the input again
+     * @param from index of the first token replaced
+     * @param removed number of tokens removed
+     * @param inserted tokens inserted at from
+     * @return outcome of the run on the edited input, as if it was run from the start
+     */
+    public RecognitionResult reparse(int from, int removed, List<TerminalToken> inserted) {
+        if (from < 0 || removed < 0 || from + removed > input.size()) {
+            throw new IllegalArgumentException("Edit of " + removed + " tokens at " + from
+                    + " is outside the input of " + input.size() + " tokens");
+        }
+        input.replace(from, removed, inserted);
+
+        // steps before the last checkpoint with input index below from have only looked
+        // at tokens before the edit. The checkpoints after it, of the previous run, stay
+        // after the gap until the new run rejoins them or ends
+        int resume = checkpoints.lastBefore(from);
+        checkpoints.moveGap(resume + 1);
+        result = run(resume, from + inserted.size(), inserted.size() - removed, result);
+        return result;
+    }
+
+    /**
+     * Runs the DPDA from a checkpoint to the end of the input, or until it reaches a
+     * checkpoint of the previous run. New checkpoints are added at the gap, so the ones
+     * after it are those of the previous run
+     * @param start checkpoint to resume from, the last one before the gap
+     * @param editEnd index of the first token after the edit
+     * @param delta change of the input length by the edit
+     * @param previousResult result of the previous run, or null if there is none
+     * @return outcome of the run
+     */
+    private RecognitionResult run(int start, int editEnd, int delta,
+                                  RecognitionResult previousResult) {
+        PersistentStack trace = checkpoints.stack(start);
+        IntStack stack = new IntStack(Math.max(16, trace.size));
+        stack.pushAll(trace.toArray());
+        int state = checkpoints.state(start);
+        int i = checkpoints.inputIndex(start);
+        int step = checkpoints.step(start);
+        int n = input.size();
+        stepsRun = 0;
+        while (i < n || stack.size() > 1) {
+            int inputId = i < n ? table.inputId(input.get(i)) : SymbolTable.NONE;
+            CompiledTransition transition = table.next(state, inputId, stack);
+            if (transition == null) {
+                checkpoints.dropUntil(checkpoints.size(), 0, 0);
+                return new RecognitionResult(RecognitionResult.Outcome.REJECTED, step, i, state);
+            }
+            transition.apply(stack);
+            trace = trace.apply(transition);
+            state = transition.nextState;
+            if (transition.input != SymbolTable.EPSILON) {
+                i++;
+            }
+            step++;
+            stepsRun++;
+            if (step % interval == 0) {
+                checkpoints.add(step, state, i, trace);
+            }
+            if (previousResult == null || i < editEnd) {
+                continue;
+            }
+            // same place in the input of the previous run, whose checkpoints come after
+            // the ones of this run; those before it are dropped as they are passed
+            int previousIndex = i - delta;
+            int next = checkpoints.afterGap();
+            while (next < checkpoints.size() && checkpoints.inputIndex(next) < previousIndex) {
+                checkpoints.dropUntil(next + 1, 0, 0);
+            }
+            for (int k = next; k < checkpoints.size() && checkpoints.inputIndex(k) == previousIndex; k++) {
+                if (checkpoints.state(k) == state && checkpoints.stack(k).sameAs(trace)) {
+                    return rejoin(k, step, delta, previousResult);
+                }
+            }
+        }
+        checkpoints.dropUntil(checkpoints.size(), 0, 0);
+        RecognitionResult.Outcome outcome = step > 0 && table.isAccepting(state)
+                ? RecognitionResult.Outcome.ACCEPTED : RecognitionResult.Outcome.REJECTED;
+        return new RecognitionResult(outcome, step, i, state);
+    }
+
+    /**
+     * Takes over the rest of the previous run from its checkpoint k, which the new run
+     * has reached after step steps
+     */
+    private RecognitionResult rejoin(int k, int step, int delta, RecognitionResult previousResult) {
+        int offset = step - checkpoints.step(k);
+        checkpoints.dropUntil(k + 1, offset, delta);
+        return new RecognitionResult(previousResult.outcome, previousResult.steps + offset,
+                previousResult.inputIndex + delta, previousResult.finalState);
+    }
+}
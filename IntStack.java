@@ -0,0 +1,93 @@
+package edu.njit.cs314;
+
+import java.util.Arrays;
+
+/**
+ * Growable stack of symbol ids backed by an int array. Unlike java.util.Stack it is
+ * not synchronized and the top entries can be inspected in place, so a step of the
+ * DPDA does not allocate. The largest size the stack has had is kept as well.
+ * Date created: 10/18/26
+ */
+class IntStack {
+
+    private int[] items;
+    private int size;
+    private int maxSize;
+
+    public IntStack() {
+        this(16);
+    }
+
+    public IntStack(int capacity) {
+        items = new int[Math.max(capacity, 1)];
+    }
+
+    public void push(int id) {
+        if (size == items.length) {
+            items = Arrays.copyOf(items, size * 2);
+        }
+        items[size++] = id;
+        if (size > maxSize) {
+            maxSize = size;
+        }
+    }
+
+    /**
+     * Pushes ids so that ids[0] ends up on top of the stack
+     * @param ids
+     */
+    public void pushAll(int[] ids) {
+        if (size + ids.length > items.length) {
+            items = Arrays.copyOf(items, Math.max(size * 2, size + ids.length));
+        }
+        for (int k = ids.length - 1; k >= 0; k--) {
+            items[size++] = ids[k];
+        }
+        if (size > maxSize) {
+            maxSize = size;
+        }
+    }
+
+    public int pop() {
+        return items[--size];
+    }
+
+    /**
+     * Removes the top n entries
+     * @param n
+     */
+    public void pop(int n) {
+        size -= n;
+    }
+
+    public int peek() {
+        return items[size - 1];
+    }
+
+    /**
+     * @param depth 0 for top of stack
+     * @return id at the given depth below the top
+     */
+    public int peek(int depth) {
+        return items[size - 1 - depth];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the largest size of the stack so far
+     */
+    public int maxSize() {
+        return maxSize;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+}
@@ -0,0 +1,787 @@
+package edu.njit.cs314;
+
+import java.util.*;
+
+/**
+ * Builds a DPDA for a grammar from its LALR(1) parsing table, with rulesForReduction
+ * filled in, instead of writing the reduction automaton by hand.
+ * The stack of the DPDA is the stack of the LR parser: one StateToken per grammar
+ * symbol, naming the LR state the symbol was shifted or reduced from, above a bottom
+ * marker. The current LR state is the state of the DPDA, and an LR state is named on
+ * the stack by the first DPDA state made for it. A reduction by a rule with k
+ * symbols on its right side pops k-1 states and goes to the state given by the one
+ * below them, which stays on the stack; the k-1 states are matched with
+ * StateToken.WILDCARD. A DPDA consumes the lookahead symbol it reduces on, so after
+ * a reduction on lookahead a the DPDA has to remember a until it is shifted. If the
+ * target state shifts a, the reduction shifts it in the same move. If the target
+ * state reduces whatever the lookahead, the reduction pushes a as a LookAheadToken
+ * for the state to reduce on epsilon input. Only a target whose reduction depends on
+ * a gets a copy that holds a and makes its moves on epsilon input. States whose only
+ * action is one reduction reduce without looking at the input.
+ * DPDA states are made from the start state on as moves lead to them, so only states
+ * that a run can reach are made. A reduction looks back only to the states that hold
+ * the start of its rule, and a reduction after which no sequence of reductions can
+ * shift its lookahead is left out, since the DPDA would reject the input after it.
+ * Since a DPDA cannot look past the end of its input, only states that always reduce
+ * and the state that accepts may act at the end of input. Grammars whose start rules
+ * end with an end marker terminal, like test2's S -> E$, satisfy this.
+ * The transitions are added with addTransition(), so the result is checked to be
+ * deterministic as well.
+ * Date created: 10/18/26
+ */
+public class LRGenerator {
+
+    private static final String BOTTOM = "Z0";
+    // DPDA states before the LR states
+    private static final int START = 0;
+    private static final int ACCEPT = 1;
+    private static final int FIRST_LR_STATE = 2;
+
+    private static final int NO_ACTION = 0;
+    private static final int SHIFT = 1;
+    private static final int REDUCE = 2;
+    private static final int ACCEPT_ACTION = 3;
+
+    private final List<DPDA.Rule> rules;
+    // symbols: terminals 0 .. nTerminals-1, end of input nTerminals, then variables
+    private final List<String> terminals;
+    private final List<String> variables;
+    private final Map<String,Integer> terminalIds = new HashMap<>();
+    private final Map<String,Integer> variableIds = new HashMap<>();
+    private final int nTerminals;
+    private final int end;
+    // productions: 0 is the augmented S' -> start, p + 1 is rules.get(p)
+    private final int[] lhs;
+    private final int[][] rhs;
+    private final int maxLength;
+    private final boolean[] nullable;
+    private final BitSet[] first;
+
+    // LALR(1) automaton
+    private int nStates;
+    private int[][] gotos; // [state][symbol] -> state or -1
+    private int[][] actions; // [state][terminal or end] -> action << 16 | argument
+    private int acceptState;
+    private BitSet[] startsProduction; // [production] -> states with an item A -> .rhs of it
+
+    private LRGenerator(List<DPDA.Rule> rules, VariableToken start) {
+        this.rules = rules;
+        SortedSet<String> terminalSet = new TreeSet<>();
+        SortedSet<String> variableSet = new TreeSet<>();
+        variableSet.add(start.value);
+        for (DPDA.Rule rule : rules) {
+            variableSet.add(rule.lhs.value);
+        }
+        for (DPDA.Rule rule : rules) {
+            for (GrammarToken token : rule.rhs) {
+                if (token instanceof VariableToken) {
+                    if (!variableSet.contains(token.value)) {
+                        throw new IllegalArgumentException("Variable " + token + " has no rules");
+                    }
+                } else {
+                    terminalSet.add(token.value);
+                }
+            }
+        }
+        if (variableSet.contains(BOTTOM)) {
+            throw new IllegalArgumentException("Variable " + BOTTOM + " is reserved for the bottom of the stack");
+        }
+        terminals = new ArrayList<>(terminalSet);
+        variables = new ArrayList<>(variableSet);
+        nTerminals = terminals.size();
+        end = nTerminals;
+        for (int k = 0; k < nTerminals; k++) {
+            terminalIds.put(terminals.get(k), k);
+        }
+        for (int k = 0; k < variables.size(); k++) {
+            variableIds.put(variables.get(k), end + 1 + k);
+        }
+        lhs = new int[rules.size() + 1];
+        rhs = new int[rules.size() + 1][];
+        lhs[0] = -1;
+        rhs[0] = new int[] {variableIds.get(start.value)};
+        int longest = 1;
+        for (int p = 1; p <= rules.size(); p++) {
+            DPDA.Rule rule = rules.get(p - 1);
+            lhs[p] = variableIds.get(rule.lhs.value);
+            rhs[p] = new int[rule.rhs.size()];
+            for (int k = 0; k < rhs[p].length; k++) {
+                GrammarToken token = rule.rhs.get(k);
+                rhs[p][k] = token instanceof VariableToken ? variableIds.get(token.value)
+                        : terminalIds.get(token.value);
+            }
+            longest = Math.max(longest, rhs[p].length);
+        }
+        maxLength = longest;
+        nullable = new boolean[variables.size()];
+        first = new BitSet[variables.size()];
+        computeFirst();
+    }
+
+    /**
+     * Generates a DPDA that accepts the language of the grammar
+     * @param rules rules of the grammar
+     * @param start start variable
+     * @return the DPDA, whose transitions reduce by the given rules
+     * @throws IllegalArgumentException if the grammar is not LALR(1) or needs to look
+     * past the end of input
+     */
+    public static DPDA generate(List<DPDA.Rule> rules, VariableToken start)
+            throws InvalidStateException, InvalidSymbolException {
+        LRGenerator generator = new LRGenerator(rules, start);
+        generator.buildTable();
+        return generator.buildDPDA();
+    }
+
+    private boolean isVariable(int symbol) {
+        return symbol > end;
+    }
+
+    private int variable(int symbol) {
+        return symbol - end - 1;
+    }
+
+    private void computeFirst() {
+        for (int v = 0; v < first.length; v++) {
+            first[v] = new BitSet();
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int p = 1; p < lhs.length; p++) {
+                int v = variable(lhs[p]);
+                int before = first[v].cardinality();
+                boolean allNullable = true;
+                for (int symbol : rhs[p]) {
+                    if (!isVariable(symbol)) {
+                        first[v].set(symbol);
+                        allNullable = false;
+                        break;
+                    }
+                    first[v].or(first[variable(symbol)]);
+                    if (!nullable[variable(symbol)]) {
+                        allNullable = false;
+                        break;
+                    }
+                }
+                if (allNullable && !nullable[v]) {
+                    nullable[v] = true;
+                    changed = true;
+                }
+                changed |= first[v].cardinality() != before;
+            }
+        }
+    }
+
+    // LR(0) items are coded as production * (maxLength + 1) + dot
+
+    private int item(int production, int dot) {
+        return production * (maxLength + 1) + dot;
+    }
+
+    private int production(int item) {
+        return item / (maxLength + 1);
+    }
+
+    private int dot(int item) {
+        return item % (maxLength + 1);
+    }
+
+    /**
+     * @return the symbol after the dot of the item, or -1 if the item is complete
+     */
+    private int symbolAfterDot(int item) {
+        int p = production(item);
+        return dot(item) < rhs[p].length ? rhs[p][dot(item)] : -1;
+    }
+
+    /**
+     * @param kernel sorted kernel items of a state
+     * @return the LR(0) closure of the kernel, kernel items first
+     */
+    private int[] closure(int[] kernel) {
+        int[] items = Arrays.copyOf(kernel, kernel.length + lhs.length);
+        int n = kernel.length;
+        BitSet added = new BitSet();
+        for (int k = 0; k < n; k++) {
+            int symbol = symbolAfterDot(items[k]);
+            if (symbol >= 0 && isVariable(symbol) && !added.get(symbol)) {
+                added.set(symbol);
+                for (int q = 1; q < lhs.length; q++) {
+                    if (lhs[q] == symbol) {
+                        items[n++] = item(q, 0);
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf(items, n);
+    }
+
+    /**
+     * Spreads the lookaheads of the kernel items of a state over the rest of its
+     * closure: an item B -> .x added for A -> y.Bz gets FIRST(z), and the lookaheads
+     * of A -> y.Bz if z is nullable
+     * @param items closure of the state, kernel items first
+     * @param lookAheads lookaheads of the items, given for the kernel items and
+     * filled in for the others
+     */
+    private void spread(int[] items, BitSet[] lookAheads) {
+        Map<Integer,Integer> positions = new HashMap<>();
+        for (int k = 0; k < items.length; k++) {
+            positions.put(items[k], k);
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int k = 0; k < items.length; k++) {
+                int symbol = symbolAfterDot(items[k]);
+                if (symbol < 0 || !isVariable(symbol)) {
+                    continue;
+                }
+                int p = production(items[k]);
+                BitSet follow = new BitSet();
+                boolean allNullable = true;
+                for (int d = dot(items[k]) + 1; d < rhs[p].length && allNullable; d++) {
+                    if (isVariable(rhs[p][d])) {
+                        follow.or(first[variable(rhs[p][d])]);
+                        allNullable = nullable[variable(rhs[p][d])];
+                    } else {
+                        follow.set(rhs[p][d]);
+                        allNullable = false;
+                    }
+                }
+                if (allNullable) {
+                    follow.or(lookAheads[k]);
+                }
+                for (int q = 1; q < lhs.length; q++) {
+                    if (lhs[q] != symbol) {
+                        continue;
+                    }
+                    BitSet target = lookAheads[positions.get(item(q, 0))];
+                    int before = target.cardinality();
+                    target.or(follow);
+                    changed |= target.cardinality() != before;
+                }
+            }
+        }
+    }
+
+    private static List<Integer> key(int[] values) {
+        List<Integer> key = new ArrayList<>(values.length);
+        for (int value : values) {
+            key.add(value);
+        }
+        return key;
+    }
+
+    /**
+     * Builds the LR(0) collection, computes the LALR(1) lookaheads of its kernel items
+     * by propagation and fills in the actions. For each kernel item the closure of
+     * the item alone, with a marker lookahead, tells which lookaheads the items it
+     * leads to get whatever it holds and which they get from it; the latter are then
+     * propagated until nothing changes
+     */
+    private void buildTable() {
+        int nSymbols = end + 1 + variables.size();
+        List<int[]> kernels = new ArrayList<>();
+        List<int[]> closures = new ArrayList<>();
+        Map<List<Integer>,Integer> index = new HashMap<>();
+        List<int[]> transitions = new ArrayList<>();
+        kernels.add(new int[] {item(0, 0)});
+        index.put(key(kernels.get(0)), 0);
+        for (int s = 0; s < kernels.size(); s++) {
+            int[] items = closure(kernels.get(s));
+            closures.add(items);
+            int[] next = new int[nSymbols];
+            Arrays.fill(next, -1);
+            Map<Integer,SortedSet<Integer>> targets = new TreeMap<>();
+            for (int item : items) {
+                int symbol = symbolAfterDot(item);
+                if (symbol >= 0) {
+                    targets.computeIfAbsent(symbol, x -> new TreeSet<>()).add(item + 1);
+                }
+            }
+            for (Map.Entry<Integer,SortedSet<Integer>> target : targets.entrySet()) {
+                int[] kernel = target.getValue().stream().mapToInt(Integer::intValue).toArray();
+                Integer t = index.get(key(kernel));
+                if (t == null) {
+                    t = kernels.size();
+                    kernels.add(kernel);
+                    index.put(key(kernel), t);
+                }
+                next[target.getKey()] = t;
+            }
+            transitions.add(next);
+        }
+        nStates = kernels.size();
+        gotos = transitions.toArray(new int[0][]);
+
+        // lookaheads of the kernel items: [state][kernel item]
+        BitSet[][] lookAheads = new BitSet[nStates][];
+        for (int s = 0; s < nStates; s++) {
+            lookAheads[s] = new BitSet[kernels.get(s).length];
+            for (int k = 0; k < lookAheads[s].length; k++) {
+                lookAheads[s][k] = new BitSet();
+            }
+        }
+        lookAheads[0][0].set(end);
+        // kernel items that pass their lookaheads on: [state][kernel item] -> state, item
+        List<List<int[]>> propagation = new ArrayList<>();
+        int marker = end + 1;
+        for (int s = 0; s < nStates; s++) {
+            int[] items = closures.get(s);
+            for (int k = 0; k < kernels.get(s).length; k++) {
+                BitSet[] spread = new BitSet[items.length];
+                for (int j = 0; j < items.length; j++) {
+                    spread[j] = new BitSet();
+                }
+                spread[k].set(marker);
+                spread(items, spread);
+                List<int[]> to = new ArrayList<>();
+                for (int j = 0; j < items.length; j++) {
+                    int symbol = symbolAfterDot(items[j]);
+                    if (symbol < 0 || spread[j].isEmpty()) {
+                        continue;
+                    }
+                    int t = gotos[s][symbol];
+                    int kt = Arrays.binarySearch(kernels.get(t), items[j] + 1);
+                    BitSet spontaneous = spread[j].get(0, marker);
+                    lookAheads[t][kt].or(spontaneous);
+                    if (spread[j].get(marker)) {
+                        to.add(new int[] {t, kt});
+                    }
+                }
+                propagation.add(to);
+            }
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int from = 0;
+            for (int s = 0; s < nStates; s++) {
+                for (int k = 0; k < kernels.get(s).length; k++) {
+                    for (int[] to : propagation.get(from++)) {
+                        BitSet target = lookAheads[to[0]][to[1]];
+                        int before = target.cardinality();
+                        target.or(lookAheads[s][k]);
+                        changed |= target.cardinality() != before;
+                    }
+                }
+            }
+        }
+
+        actions = new int[nStates][end + 1];
+        acceptState = -1;
+        startsProduction = new BitSet[lhs.length];
+        for (int p = 0; p < lhs.length; p++) {
+            startsProduction[p] = new BitSet();
+        }
+        for (int s = 0; s < nStates; s++) {
+            for (int a = 0; a < end; a++) {
+                if (gotos[s][a] >= 0) {
+                    setAction(s, a, SHIFT, gotos[s][a]);
+                }
+            }
+            int[] items = closures.get(s);
+            BitSet[] itemLookAheads = new BitSet[items.length];
+            for (int j = 0; j < items.length; j++) {
+                itemLookAheads[j] = j < lookAheads[s].length ? lookAheads[s][j] : new BitSet();
+            }
+            spread(items, itemLookAheads);
+            for (int j = 0; j < items.length; j++) {
+                int p = production(items[j]);
+                if (dot(items[j]) == 0) {
+                    startsProduction[p].set(s);
+                }
+                if (symbolAfterDot(items[j]) >= 0) {
+                    continue;
+                }
+                if (p == 0) {
+                    setAction(s, end, ACCEPT_ACTION, 0);
+                    acceptState = s;
+                    continue;
+                }
+                BitSet on = itemLookAheads[j];
+                for (int a = on.nextSetBit(0); a >= 0; a = on.nextSetBit(a + 1)) {
+                    setAction(s, a, REDUCE, p);
+                }
+            }
+        }
+    }
+
+    private void setAction(int state, int symbol, int action, int argument) {
+        int code = action << 16 | argument;
+        int existing = actions[state][symbol];
+        if (existing != NO_ACTION && existing != code) {
+            throw new IllegalArgumentException("Grammar is not LALR(1): "
+                    + describe(existing) + " and " + describe(code) + " on "
+                    + (symbol == end ? "end of input" : terminals.get(symbol))
+                    + " in state " + state);
+        }
+        actions[state][symbol] = code;
+    }
+
+    private String describe(int code) {
+        int argument = code & 0xFFFF;
+        switch (code >>> 16) {
+            case SHIFT:
+                return "shift to state " + argument;
+            case REDUCE:
+                DPDA.Rule rule = rules.get(argument - 1);
+                StringBuilder builder = new StringBuilder("reduce by ").append(rule.lhs).append("->");
+                for (GrammarToken token : rule.rhs) {
+                    builder.append(token);
+                }
+                return builder.toString();
+            default:
+                return "accept";
+        }
+    }
+
+    /**
+     * @return the production the state reduces by whatever the lookahead, or -1
+     */
+    private int defaultReduction(int state) {
+        int production = -1;
+        for (int a = 0; a <= end; a++) {
+            int code = actions[state][a];
+            if (code == NO_ACTION) {
+                continue;
+            }
+            if (code >>> 16 != REDUCE || (production >= 0 && (code & 0xFFFF) != production)) {
+                return -1;
+            }
+            production = code & 0xFFFF;
+        }
+        return production;
+    }
+
+    /**
+     * @return the states below which the right side of the production leads to state,
+     * among those whose items start the production, so that the reduction can happen
+     */
+    private List<Integer> lookBack(int state, int production) {
+        List<Integer> result = new ArrayList<>();
+        for (int from = startsProduction[production].nextSetBit(0); from >= 0;
+             from = startsProduction[production].nextSetBit(from + 1)) {
+            int s = from;
+            for (int k = 0; k < rhs[production].length && s >= 0; k++) {
+                s = gotos[s][rhs[production][k]];
+            }
+            if (s == state) {
+                result.add(from);
+            }
+        }
+        return result;
+    }
+
+    // a transition of the DPDA before the DPDA exists; stack symbols are LR states,
+    // WILDCARD_STATE or BOTTOM_SYMBOL
+    private static final int WILDCARD_STATE = -1;
+    private static final int BOTTOM_SYMBOL = -2;
+    // lookahead symbol of terminal a on the stack is FIRST_LOOKAHEAD - a
+    private static final int FIRST_LOOKAHEAD = -3;
+    // lookahead of a DPDA state that finds its lookahead on top of the stack
+    private static final int ON_STACK = -2;
+
+    private static class Move {
+        public final int currState;
+        public final int input; // terminal or -1 for epsilon
+        public final int[] stackTop;
+        public final int nextState;
+        public final int[] replacement;
+        public final DPDA.Rule rule;
+
+        public Move(int currState, int input, int[] stackTop, int nextState,
+                    int[] replacement, DPDA.Rule rule) {
+            this.currState = currState;
+            this.input = input;
+            this.stackTop = stackTop;
+            this.nextState = nextState;
+            this.replacement = replacement;
+            this.rule = rule;
+        }
+    }
+
+    private final List<Move> moves = new ArrayList<>();
+    // (LR state, lookahead, -1 or ON_STACK) -> DPDA state for the LR state holding the
+    // lookahead
+    private final Map<Long,Integer> dpdaStates = new HashMap<>();
+    // DPDA states whose moves are still to be made: LR state, lookahead, DPDA state
+    private final Deque<int[]> work = new ArrayDeque<>();
+    // LR state -> the first DPDA state made for it, which names it on the stack, or -1
+    private int[] stackSymbols;
+    // [LR state][terminal] -> true if the state holding the terminal can go on to shift it
+    private boolean[][] canHold;
+    // LR state pushed by moves that reduce and shift -> DPDA state the first one goes to
+    private final Map<Integer,Integer> pushed = new TreeMap<>();
+    private int nDPDAStates = FIRST_LR_STATE;
+
+    /**
+     * @param state LR state
+     * @param lookAhead terminal the DPDA state holds and makes its moves on, -1 or
+     * ON_STACK
+     * @return the DPDA state, made and queued for its moves when first asked for
+     */
+    private int dpdaState(int state, int lookAhead) {
+        long key = (long) state << 32 | (lookAhead & 0xFFFFFFFFL);
+        Integer dpdaState = dpdaStates.get(key);
+        if (dpdaState == null) {
+            dpdaState = nDPDAStates++;
+            dpdaStates.put(key, dpdaState);
+            if (stackSymbols[state] < 0) {
+                stackSymbols[state] = dpdaState;
+            }
+            work.addLast(new int[] {state, lookAhead, dpdaState});
+        }
+        return dpdaState;
+    }
+
+    /**
+     * @return the production the state reduces by with the lookahead held, or -1
+     */
+    private int reduction(int state, int lookAhead) {
+        int code = actions[state][lookAhead];
+        if (code == NO_ACTION) {
+            return defaultReduction(state);
+        }
+        return code >>> 16 == REDUCE ? code & 0xFFFF : -1;
+    }
+
+    /**
+     * Finds the LR states that, holding a lookahead, reach a state that shifts it by
+     * some sequence of reductions. With LALR(1) lookaheads or default reductions, a
+     * state may reduce on a lookahead that no state it can reduce to shifts
+     */
+    private void findShiftable() {
+        canHold = new boolean[nStates][end];
+        for (int s = 0; s < nStates; s++) {
+            for (int a = 0; a < end; a++) {
+                canHold[s][a] = actions[s][a] >>> 16 == SHIFT;
+            }
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int s = 0; s < nStates; s++) {
+                for (int a = 0; a < end; a++) {
+                    int production = canHold[s][a] ? -1 : reduction(s, a);
+                    if (production <= 0) {
+                        continue;
+                    }
+                    if (rhs[production].length == 0) {
+                        canHold[s][a] = canHold[gotos[s][lhs[production]]][a];
+                    } else {
+                        for (int below : lookBack(s, production)) {
+                            canHold[s][a] |= canHold[gotos[below][lhs[production]]][a];
+                        }
+                    }
+                    changed |= canHold[s][a];
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the moves for a reduction in an LR state
+     * @param from DPDA state that makes the moves
+     * @param input terminal the moves read or -1
+     * @param state LR state
+     * @param production
+     * @param lookAhead terminal the moves go on to hold, or -1 if they do not read one
+     */
+    private void reduce(int from, int input, int state, int production, int lookAhead) {
+        reduce(from, input, new int[0], state, production, lookAhead);
+    }
+
+    /**
+     * Adds the moves for a reduction in an LR state. A move to a state that shifts the
+     * lookahead shifts it as well, and a move to a state that reduces whatever the
+     * lookahead pushes the lookahead for that state to reduce on, so a lookahead is
+     * held in a copy state only where a reduction depends on it
+     * @param from DPDA state that makes the moves
+     * @param input terminal the moves read or -1
+     * @param above symbols the moves pop above the right side of the production
+     * @param state LR state
+     * @param production
+     * @param lookAhead terminal the moves go on to hold, or -1 if they do not read one
+     */
+    private void reduce(int from, int input, int[] above, int state, int production,
+                        int lookAhead) {
+        DPDA.Rule rule = rules.get(production - 1);
+        int k = rhs[production].length;
+        List<Integer> belowStates = k == 0 ? Collections.singletonList(state)
+                : lookBack(state, production);
+        for (int below : belowStates) {
+            int target = gotos[below][lhs[production]];
+            // a rule with an empty right side pops nothing and pushes the state
+            int[] stackTop = Arrays.copyOf(above, above.length + k);
+            Arrays.fill(stackTop, above.length, stackTop.length, WILDCARD_STATE);
+            if (k > 0) {
+                stackTop[stackTop.length - 1] = below;
+            }
+            int code = lookAhead < 0 ? NO_ACTION : actions[target][lookAhead];
+            if (lookAhead < 0) {
+                moves.add(new Move(from, input, stackTop, dpdaState(target, -1),
+                        new int[] {below}, rule));
+            } else if (code >>> 16 == SHIFT) {
+                int shifted = dpdaState(code & 0xFFFF, -1);
+                pushed.putIfAbsent(target, shifted);
+                moves.add(new Move(from, input, stackTop, shifted, new int[] {target, below},
+                        rule));
+            } else if (!canHold[target][lookAhead]) {
+                // the lookahead would be rejected after the reduction
+            } else if (defaultReduction(target) > 0) {
+                moves.add(new Move(from, input, stackTop, dpdaState(target, ON_STACK),
+                        new int[] {FIRST_LOOKAHEAD - lookAhead, below}, rule));
+            } else {
+                moves.add(new Move(from, input, stackTop, dpdaState(target, lookAhead),
+                        new int[] {below}, rule));
+            }
+        }
+    }
+
+    /**
+     * Makes the moves of an LR state that reads its input
+     * @param q DPDA state of the LR state
+     * @param s LR state
+     */
+    private void readInput(int q, int s) {
+        int production = defaultReduction(s);
+        if (production > 0) {
+            reduce(q, -1, s, production, -1);
+            return;
+        }
+        for (int a = 0; a < end; a++) {
+            int code = actions[s][a];
+            if (code >>> 16 == SHIFT) {
+                moves.add(new Move(q, a, new int[0], dpdaState(code & 0xFFFF, -1),
+                        new int[] {s}, null));
+            } else if (code >>> 16 == REDUCE) {
+                reduce(q, a, s, code & 0xFFFF, a);
+            }
+        }
+        int atEnd = actions[s][end];
+        if (atEnd >>> 16 == REDUCE) {
+            throw new IllegalArgumentException("State " + s + " has to look past the end of "
+                    + "input to " + describe(atEnd) + "; end the start rules with an end marker");
+        }
+        if (atEnd >>> 16 == ACCEPT_ACTION) {
+            for (int a = 0; a < end; a++) {
+                if (actions[s][a] >>> 16 == REDUCE) {
+                    throw new IllegalArgumentException("State " + s + " both accepts and may "
+                            + describe(actions[s][a]) + "; end the start rules with an end marker");
+                }
+            }
+            moves.add(new Move(q, -1, new int[] {0, BOTTOM_SYMBOL}, ACCEPT, new int[0], null));
+        }
+    }
+
+    /**
+     * Makes the moves of an LR state that holds a lookahead, on epsilon input
+     * @param q DPDA state of the LR state and lookahead
+     * @param s LR state
+     * @param a the lookahead
+     */
+    private void holdLookAhead(int q, int s, int a) {
+        int code = actions[s][a];
+        if (code >>> 16 == SHIFT) {
+            moves.add(new Move(q, -1, new int[0], dpdaState(code & 0xFFFF, -1),
+                    new int[] {s}, null));
+        } else if (reduction(s, a) > 0) {
+            reduce(q, -1, s, reduction(s, a), a);
+        }
+    }
+
+    /**
+     * Makes the moves of an LR state that reduces whatever the lookahead, with the
+     * lookahead on top of the stack, on epsilon input
+     * @param q DPDA state of the LR state with the lookahead on the stack
+     * @param s LR state
+     */
+    private void reduceOnStack(int q, int s) {
+        for (int a = 0; a < end; a++) {
+            if (canHold[s][a]) {
+                reduce(q, -1, new int[] {FIRST_LOOKAHEAD - a}, s, defaultReduction(s), a);
+            }
+        }
+    }
+
+    /**
+     * Makes the DPDA states from the start state on, so that only states a run can
+     * reach are made, and adds their moves to the DPDA
+     */
+    private DPDA buildDPDA() throws InvalidStateException, InvalidSymbolException {
+        stackSymbols = new int[nStates];
+        Arrays.fill(stackSymbols, -1);
+        findShiftable();
+        moves.add(new Move(START, -1, new int[0], dpdaState(0, -1), new int[] {BOTTOM_SYMBOL}, null));
+        while (!work.isEmpty()) {
+            int[] next = work.removeFirst();
+            if (next[1] == -1) {
+                readInput(next[2], next[0]);
+            } else if (next[1] == ON_STACK) {
+                reduceOnStack(next[2], next[0]);
+            } else {
+                holdLookAhead(next[2], next[0], next[1]);
+            }
+        }
+        // an LR state the DPDA only passes through on such moves has no state of its own
+        // to name it. A reduction that looks back to it needs a name that no other LR
+        // state has; otherwise only wildcards match it and the state it shifts to will do
+        BitSet lookedBackTo = new BitSet();
+        for (BitSet states : startsProduction) {
+            lookedBackTo.or(states);
+        }
+        for (Map.Entry<Integer,Integer> entry : pushed.entrySet()) {
+            int s = entry.getKey();
+            if (stackSymbols[s] < 0) {
+                stackSymbols[s] = lookedBackTo.get(s) ? nDPDAStates++ : entry.getValue();
+            }
+        }
+
+        Set<String> variableValues = new HashSet<>(variables);
+        variableValues.add(BOTTOM);
+        DPDA pda = new DPDA(nDPDAStates, START, new HashSet<>(terminals), variableValues,
+                new HashSet<>(Collections.singletonList(ACCEPT)));
+        VariableToken bottom = pda.variable(BOTTOM);
+        for (Move move : moves) {
+            List<StackToken> stackTop = tokens(pda, move.stackTop, bottom);
+            if (stackTop == null) {
+                // looks back to an LR state no run reaches
+                continue;
+            }
+            pda.addTransition(move.currState,
+                    move.input < 0 ? TerminalToken.EPSILON : pda.terminal(terminals.get(move.input)),
+                    stackTop, move.nextState, tokens(pda, move.replacement, bottom),
+                    move.rule == null ? new ArrayList<>() : Collections.singletonList(move.rule));
+        }
+        return pda;
+    }
+
+    /**
+     * @return the stack tokens of the symbols of a move, or null if one of them is an
+     * LR state that has no DPDA state
+     */
+    private List<StackToken> tokens(DPDA pda, int[] symbols, VariableToken bottom)
+            throws InvalidStateException, InvalidSymbolException {
+        if (symbols.length == 0) {
+            return DPDA.EPSILON_STACK;
+        }
+        List<StackToken> tokens = new ArrayList<>(symbols.length);
+        for (int symbol : symbols) {
+            if (symbol == WILDCARD_STATE) {
+                tokens.add(StateToken.WILDCARD);
+            } else if (symbol == BOTTOM_SYMBOL) {
+                tokens.add(bottom);
+            } else if (symbol <= FIRST_LOOKAHEAD) {
+                tokens.add(pda.lookAhead(pda.terminal(terminals.get(FIRST_LOOKAHEAD - symbol))));
+            } else if (stackSymbols[symbol] < 0) {
+                return null;
+            } else {
+                tokens.add(pda.state(stackSymbols[symbol]));
+            }
+        }
+        return tokens;
+    }
+}
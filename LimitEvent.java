@@ -0,0 +1,32 @@
+package edu.njit.cs314;
+
+import jdk.jfr.*;
+
+/**
+ * JFR event for a run stopped before it could accept or reject, by one of its
+ * RunLimits, cancellation or an epsilon loop
+ * Date created: 10/18/26
+ */
+@Name("edu.njit.cs314.Limit")
+@Label("DPDA Limit Violation")
+@Category("DPDA")
+@Description("Run of a DPDA stopped by a limit, cancellation or an epsilon loop")
+@StackTrace(false)
+class LimitEvent extends Event {
+
+    @Label("Outcome")
+    String outcome;
+
+    @Label("Steps")
+    int steps;
+
+    @Label("Input Index")
+    @Description("Index of the first input symbol not consumed")
+    int inputIndex;
+
+    @Label("State")
+    int state;
+
+    @Label("Stack Depth")
+    int stackDepth;
+}
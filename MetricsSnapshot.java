@@ -0,0 +1,149 @@
+package edu.njit.cs314;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Copy of the counters of DPDAMetrics at one moment. Transitions are numbered in the
+ * order they are compiled, as listed by transitions.
+ * writeTo() exports it as text, one metric per line in the form
+ * <pre>
+ * name{label="value",...} count
+ * </pre>
+ * with runs by outcome, transition and state hits, rejects by state and input symbol,
+ * rejects_at_end and rejects_unknown_symbol by state for inputs rejected at their end
+ * or at a symbol not in the input alphabet, and the count, median, 99th percentile and maximum of
+ * the histograms of steps, max stack depth and epsilon move percentage per input.
+ * Counts that are 0 are left out.
+ * Date created: 10/18/26
+ */
+public class MetricsSnapshot {
+
+    public final List<String> transitions;
+    public final Map<RecognitionResult.Outcome,Long> runs;
+    public final long[] transitionHits;
+    public final long[] stateHits;
+    public final Histogram steps;
+    public final Histogram maxStackDepth;
+    public final Histogram epsilonPercent;
+    private final TransitionTable table;
+    private final long[] rejects;
+
+    MetricsSnapshot(TransitionTable table, List<String> transitions, long[] outcomes,
+                    long[] transitionHits, long[] stateHits, long[] rejects,
+                    Histogram steps, Histogram maxStackDepth, Histogram epsilonPercent) {
+        this.table = table;
+        this.transitions = Collections.unmodifiableList(transitions);
+        Map<RecognitionResult.Outcome,Long> runs = new EnumMap<>(RecognitionResult.Outcome.class);
+        for (RecognitionResult.Outcome outcome : RecognitionResult.Outcome.values()) {
+            runs.put(outcome, outcomes[outcome.ordinal()]);
+        }
+        this.runs = Collections.unmodifiableMap(runs);
+        this.transitionHits = transitionHits;
+        this.stateHits = stateHits;
+        this.rejects = rejects;
+        this.steps = steps;
+        this.maxStackDepth = maxStackDepth;
+        this.epsilonPercent = epsilonPercent;
+    }
+
+    /**
+     * @return number of runs that ended
+     */
+    public long totalRuns() {
+        long total = 0;
+        for (long count : runs.values()) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * @param state
+     * @param input input symbol that could not be read, or null for the end of input
+     * @return number of inputs rejected in the state at that symbol. All symbols that are
+     * not in the input alphabet share one count
+     */
+    public long rejects(int state, TerminalToken input) {
+        int id = input == null ? DPDAMetrics.END_OF_INPUT : table.inputId(input);
+        if (state < 0 || state >= table.nStates()) {
+            return 0;
+        }
+        return rejects[DPDAMetrics.rejectIndex(table, state, id)];
+    }
+
+    /**
+     * Writes all metrics as text, see the class comment
+     * @param out
+     */
+    public void writeTo(Appendable out) throws IOException {
+        for (Map.Entry<RecognitionResult.Outcome,Long> entry : runs.entrySet()) {
+            if (entry.getValue() > 0) {
+                line(out, "runs", "outcome", entry.getKey().label, entry.getValue());
+            }
+        }
+        for (int k = 0; k < transitionHits.length; k++) {
+            if (transitionHits[k] > 0) {
+                line(out, "transition_hits", "transition", transitions.get(k), transitionHits[k]);
+            }
+        }
+        for (int state = 0; state < stateHits.length; state++) {
+            if (stateHits[state] > 0) {
+                line(out, "state_hits", "state", String.valueOf(state), stateHits[state]);
+            }
+        }
+        int width = table.nInputs() + 2;
+        for (int k = 0; k < rejects.length; k++) {
+            if (rejects[k] > 0) {
+                String state = String.valueOf(k / width);
+                int input = k % width - 2;
+                if (input == DPDAMetrics.END_OF_INPUT) {
+                    line(out, "rejects_at_end", "state", state, rejects[k]);
+                } else if (input == SymbolTable.NONE) {
+                    line(out, "rejects_unknown_symbol", "state", state, rejects[k]);
+                } else {
+                    String symbol = table.symbols().symbol(input).value;
+                    out.append("rejects{state=\"").append(state)
+                            .append("\",input=\"").append(escape(symbol)).append("\"} ").append(String.valueOf(rejects[k])).append('\n');
+                }
+            }
+        }
+        histogram(out, "steps", steps);
+        histogram(out, "max_stack_depth", maxStackDepth);
+        histogram(out, "epsilon_percent", epsilonPercent);
+    }
+
+    private static void line(Appendable out, String name, String label, String value,
+                             long count) throws IOException {
+        out.append(name).append("{").append(label).append("=\"")
+                .append(escape(value)).append("\"} ").append(String.valueOf(count)).append('\n');
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private static void histogram(Appendable out, String name, Histogram histogram)
+            throws IOException {
+        if (histogram.count() == 0) {
+            return;
+        }
+        out.append(name).append("_count ").append(String.valueOf(histogram.count())).append('\n');
+        line(out, name, "quantile", "0.5", histogram.percentile(0.5));
+        line(out, name, "quantile", "0.99", histogram.percentile(0.99));
+        out.append(name).append("_max ").append(String.valueOf(histogram.max())).append('\n');
+    }
+
+    /**
+     * @return the metrics as written by writeTo()
+     */
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        try {
+            writeTo(builder);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,356 @@
+package edu.njit.cs314;
+
+import java.util.*;
+
+/**
+ * A DPDA with the transitions and states that cannot affect acceptance taken out,
+ * together with a report of what was taken out. Made by DPDA.minimize() in three passes:
+ * <ol>
+ * <li>Reachability. Starting from startState with an empty stack, a transition can
+ * fire once its state is reachable and every symbol of its stack top is pushed by
+ * some transition that can fire (a wildcard needs some state pushed). The others,
+ * and with them the transitions of unreachable states, are removed.</li>
+ * <li>Dead states. A reachable state from which no accept state can be reached loses
+ * its transitions, so runs that enter it are rejected at once. Transitions into dead
+ * states are kept: they still decide which transition the engine picks.</li>
+ * <li>Merging. States that are never on the stack are merged when they are both
+ * accepting or both not and their transitions match one to one with the same input,
+ * stack top, replacement and rules and next states that are merged too. States that
+ * are pushed as stack symbols keep their own number, since merging them would change
+ * which stack tops match.</li>
+ * </ol>
+ * Both the reachability and the dead state analysis ignore the contents of the stack
+ * beyond which symbols can be on it, so they only remove what provably never matters;
+ * the minimized DPDA accepts the same inputs with the same derivations. States are
+ * renumbered densely in their old order, which keeps the transition tables small.
+ * Date created: 10/18/26
+ */
+public class Minimization {
+
+    public static final int REMOVED = -1;
+
+    public final DPDA dpda;
+    public final int statesBefore;
+    public final int statesAfter;
+    public final int transitionsBefore;
+    public final int transitionsAfter;
+    // states no run reaches; they are dropped unless they are used as stack symbols
+    public final SortedSet<Integer> unreachableStates;
+    // transitions of reachable states whose stack top can never be on the stack
+    public final List<DPDA.Transition> unmatchableTransitions;
+    // reachable states from which no accept state can be reached
+    public final SortedSet<Integer> deadStates;
+    // groups of old states that became a single state
+    public final List<SortedSet<Integer>> mergedStates;
+    private final int[] stateMap;
+
+    private Minimization(DPDA dpda, int statesBefore, int transitionsBefore, int transitionsAfter,
+                         SortedSet<Integer> unreachableStates,
+                         List<DPDA.Transition> unmatchableTransitions,
+                         SortedSet<Integer> deadStates, List<SortedSet<Integer>> mergedStates,
+                         int[] stateMap, int statesAfter) {
+        this.dpda = dpda;
+        this.statesBefore = statesBefore;
+        this.statesAfter = statesAfter;
+        this.transitionsBefore = transitionsBefore;
+        this.transitionsAfter = transitionsAfter;
+        this.unreachableStates = Collections.unmodifiableSortedSet(unreachableStates);
+        this.unmatchableTransitions = Collections.unmodifiableList(unmatchableTransitions);
+        this.deadStates = Collections.unmodifiableSortedSet(deadStates);
+        this.mergedStates = Collections.unmodifiableList(mergedStates);
+        this.stateMap = stateMap;
+    }
+
+    /**
+     * @param state state of the original DPDA
+     * @return its number in the minimized DPDA or REMOVED
+     */
+    public int newState(int state) {
+        return state >= 0 && state < stateMap.length ? stateMap[state] : REMOVED;
+    }
+
+    /**
+     * Minimizes a DPDA given by its parts
+     * @param nStates
+     * @param startState
+     * @param acceptStates
+     * @param symbols
+     * @param transitions transitions in the order they are compiled
+     * @return the minimized DPDA, compiled, and what was removed
+     */
+    static Minimization of(int nStates, int startState, Set<Integer> acceptStates,
+                           SymbolTable symbols, List<DPDA.Transition> transitions) {
+        int n = transitions.size();
+        int[][] stackTops = new int[n][];
+        int[][] replacements = new int[n][];
+        for (int k = 0; k < n; k++) {
+            stackTops[k] = ids(symbols, transitions.get(k).stackTop);
+            replacements[k] = ids(symbols, transitions.get(k).stackTopReplacement);
+        }
+
+        // 1. states and transitions reachable from the start with an empty stack
+        boolean[] reachable = new boolean[nStates];
+        boolean[] enabled = new boolean[n];
+        BitSet pushable = new BitSet();
+        boolean anyStatePushable = false;
+        reachable[startState] = true;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int k = 0; k < n; k++) {
+                DPDA.Transition transition = transitions.get(k);
+                if (enabled[k] || !reachable[transition.currState]
+                        || !canMatch(stackTops[k], pushable, anyStatePushable)) {
+                    continue;
+                }
+                enabled[k] = true;
+                changed = true;
+                reachable[transition.nextState] = true;
+                for (int id : replacements[k]) {
+                    pushable.set(id);
+                    anyStatePushable |= symbols.isState(id);
+                }
+            }
+        }
+        SortedSet<Integer> unreachableStates = new TreeSet<>();
+        List<DPDA.Transition> unmatchableTransitions = new ArrayList<>();
+        for (int state = 0; state < nStates; state++) {
+            if (!reachable[state]) {
+                unreachableStates.add(state);
+            }
+        }
+        for (int k = 0; k < n; k++) {
+            if (!enabled[k] && reachable[transitions.get(k).currState]) {
+                unmatchableTransitions.add(transitions.get(k));
+            }
+        }
+
+        // 2. reachable states that cannot reach an accept state lose their transitions
+        List<List<Integer>> predecessors = new ArrayList<>();
+        for (int state = 0; state < nStates; state++) {
+            predecessors.add(new ArrayList<>());
+        }
+        for (int k = 0; k < n; k++) {
+            if (enabled[k]) {
+                predecessors.get(transitions.get(k).nextState).add(transitions.get(k).currState);
+            }
+        }
+        boolean[] live = new boolean[nStates];
+        Deque<Integer> work = new ArrayDeque<>();
+        for (int state : acceptStates) {
+            if (state >= 0 && state < nStates && reachable[state]) {
+                live[state] = true;
+                work.push(state);
+            }
+        }
+        while (!work.isEmpty()) {
+            for (int state : predecessors.get(work.pop())) {
+                if (!live[state]) {
+                    live[state] = true;
+                    work.push(state);
+                }
+            }
+        }
+        SortedSet<Integer> deadStates = new TreeSet<>();
+        List<List<Integer>> kept = new ArrayList<>();
+        for (int state = 0; state < nStates; state++) {
+            kept.add(new ArrayList<>());
+            if (reachable[state] && !live[state]) {
+                deadStates.add(state);
+            }
+        }
+        for (int k = 0; k < n; k++) {
+            if (enabled[k] && live[transitions.get(k).currState]) {
+                kept.get(transitions.get(k).currState).add(k);
+            }
+        }
+
+        // states that are pushed or matched as stack symbols stay as they are
+        boolean[] onStack = new boolean[nStates];
+        for (int k = 0; k < n; k++) {
+            if (enabled[k]) {
+                markStates(symbols, stackTops[k], onStack);
+                markStates(symbols, replacements[k], onStack);
+            }
+        }
+        boolean[] present = new boolean[nStates];
+        for (int state = 0; state < nStates; state++) {
+            present[state] = reachable[state] || onStack[state];
+        }
+
+        // 3. merge equivalent states by refining a partition until it is stable
+        int[] block = new int[nStates];
+        int nBlocks = 0;
+        for (int state = 0; state < nStates; state++) {
+            if (present[state]) {
+                block[state] = onStack[state] ? 2 + state : acceptStates.contains(state) ? 0 : 1;
+            }
+        }
+        while (true) {
+            Map<List<Object>,Integer> signatures = new HashMap<>();
+            int[] refined = new int[nStates];
+            for (int state = 0; state < nStates; state++) {
+                if (!present[state]) {
+                    continue;
+                }
+                List<Object> signature = new ArrayList<>();
+                signature.add(block[state]);
+                for (int k : kept.get(state)) {
+                    DPDA.Transition transition = transitions.get(k);
+                    signature.add(Arrays.asList(symbols.id(transition.inputSymbol),
+                            asList(stackTops[k]), asList(replacements[k]),
+                            transition.rulesForReduction, block[transition.nextState]));
+                }
+                Integer id = signatures.get(signature);
+                if (id == null) {
+                    id = signatures.size();
+                    signatures.put(signature, id);
+                }
+                refined[state] = id;
+            }
+            block = refined;
+            if (signatures.size() == nBlocks) {
+                break;
+            }
+            nBlocks = signatures.size();
+        }
+
+        // new numbers in the order of the first state of each block
+        int[] stateMap = new int[nStates];
+        Arrays.fill(stateMap, REMOVED);
+        int[] blockState = new int[nBlocks];
+        Arrays.fill(blockState, REMOVED);
+        List<SortedSet<Integer>> groups = new ArrayList<>();
+        int statesAfter = 0;
+        for (int state = 0; state < nStates; state++) {
+            if (!present[state]) {
+                continue;
+            }
+            if (blockState[block[state]] == REMOVED) {
+                blockState[block[state]] = statesAfter++;
+                groups.add(new TreeSet<>());
+            }
+            stateMap[state] = blockState[block[state]];
+            groups.get(stateMap[state]).add(state);
+        }
+        List<SortedSet<Integer>> mergedStates = new ArrayList<>();
+        for (SortedSet<Integer> group : groups) {
+            if (group.size() > 1) {
+                mergedStates.add(group);
+            }
+        }
+
+        Set<String> terminals = new HashSet<>();
+        Set<String> variables = new HashSet<>();
+        for (int id = 1; id < symbols.size(); id++) {
+            if (symbols.isTerminal(id)) {
+                terminals.add(symbols.symbol(id).value);
+            } else if (symbols.isVariable(id)) {
+                variables.add(symbols.symbol(id).value);
+            }
+        }
+        Set<Integer> newAcceptStates = new HashSet<>();
+        for (int state : acceptStates) {
+            if (state >= 0 && state < nStates && stateMap[state] != REMOVED) {
+                newAcceptStates.add(stateMap[state]);
+            }
+        }
+        DPDA pda = new DPDA(statesAfter, stateMap[startState], terminals, variables,
+                newAcceptStates);
+        SymbolTable newSymbols = pda.symbols();
+        int transitionsAfter = 0;
+        for (SortedSet<Integer> group : groups) {
+            for (int k : kept.get(group.first())) {
+                DPDA.Transition transition = transitions.get(k);
+                TerminalToken input = transition.inputSymbol == TerminalToken.EPSILON
+                        ? TerminalToken.EPSILON : newSymbols.terminal(transition.inputSymbol.value);
+                pda.addValidatedTransition(new DPDA.Transition(stateMap[transition.currState],
+                        input, renumber(transition.stackTop, newSymbols, stateMap),
+                        stateMap[transition.nextState],
+                        renumber(transition.stackTopReplacement, newSymbols, stateMap),
+                        transition.rulesForReduction));
+                transitionsAfter++;
+            }
+        }
+        pda.compile();
+        return new Minimization(pda, nStates, n, transitionsAfter, unreachableStates,
+                unmatchableTransitions, deadStates, mergedStates, stateMap, statesAfter);
+    }
+
+    private static int[] ids(SymbolTable symbols, List<StackToken> tokens) {
+        int[] ids = new int[tokens.size()];
+        for (int k = 0; k < ids.length; k++) {
+            ids[k] = symbols.id(tokens.get(k));
+        }
+        return ids;
+    }
+
+    private static List<Integer> asList(int[] ids) {
+        List<Integer> list = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            list.add(id);
+        }
+        return list;
+    }
+
+    private static boolean canMatch(int[] stackTop, BitSet pushable, boolean anyStatePushable) {
+        for (int id : stackTop) {
+            if (id == SymbolTable.WILDCARD ? !anyStatePushable : id < 0 || !pushable.get(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void markStates(SymbolTable symbols, int[] ids, boolean[] states) {
+        for (int id : ids) {
+            if (symbols.isState(id)) {
+                int state = ((StateToken) symbols.symbol(id)).state();
+                if (state >= 0 && state < states.length) {
+                    states[state] = true;
+                }
+            }
+        }
+    }
+
+    private static List<StackToken> renumber(List<StackToken> tokens, SymbolTable symbols,
+                                             int[] stateMap) {
+        if (tokens.isEmpty()) {
+            return DPDA.EPSILON_STACK;
+        }
+        List<StackToken> result = new ArrayList<>(tokens.size());
+        for (StackToken token : tokens) {
+            if (token == StateToken.WILDCARD) {
+                result.add(token);
+            } else if (token instanceof StateToken) {
+                result.add(symbols.state(stateMap[((StateToken) token).state()]));
+            } else if (token instanceof LookAheadToken) {
+                result.add(symbols.lookAhead(new TerminalToken(token.value.substring(1))));
+            } else if (token instanceof TerminalToken) {
+                result.add(symbols.terminal(token.value));
+            } else {
+                result.add(symbols.variable(token.value));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return summary of the states and transitions removed
+     */
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("states ").append(statesBefore).append(" -> ").append(statesAfter);
+        builder.append(", transitions ").append(transitionsBefore).append(" -> ")
+                .append(transitionsAfter).append('\n');
+        builder.append("unreachable states: ").append(unreachableStates).append('\n');
+        builder.append("transitions that never match: ").append(unmatchableTransitions.size());
+        for (DPDA.Transition transition : unmatchableTransitions) {
+            builder.append(' ').append(transition);
+        }
+        builder.append('\n');
+        builder.append("dead states: ").append(deadStates).append('\n');
+        builder.append("merged states: ").append(mergedStates);
+        return builder.toString();
+    }
+}
@@ -0,0 +1,74 @@
+package edu.njit.cs314;
+
+import jdk.jfr.*;
+
+/**
+ * JFR event for a run of a DPDA by process() or by a ParseSession, e.g. from accepts().
+ * Only runs of at least 1 ms are recorded unless the recording sets another threshold,
+ * so that a stream of short inputs adds little to a recording kept on in production.
+ * Date created: 10/18/26
+ */
+@Name("edu.njit.cs314.Parse")
+@Label("DPDA Parse")
+@Category("DPDA")
+@Description("Run of a DPDA on an input")
+@Threshold("1 ms")
+class ParseEvent extends Event {
+
+    // checked before an event is created, so that runs create none while it is off
+    private static final EventType TYPE = EventType.getEventType(ParseEvent.class);
+
+    @Label("Input Length")
+    @Description("Number of input symbols consumed")
+    int inputLength;
+
+    @Label("Steps")
+    int steps;
+
+    @Label("Accepted")
+    boolean accepted;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Label("Max Stack Depth")
+    int maxStackDepth;
+
+    @Label("Traced")
+    @Description("True for process(), which keeps every configuration")
+    boolean traced;
+
+    /**
+     * @return a begun event, or null if no recording has the event enabled
+     */
+    static ParseEvent beginIfEnabled() {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+        ParseEvent event = new ParseEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the event and commits it if it is enabled and lasted long enough
+     * @param inputLength
+     * @param steps
+     * @param outcome
+     * @param maxStackDepth
+     * @param traced
+     */
+    void finish(int inputLength, int steps, RecognitionResult.Outcome outcome,
+                int maxStackDepth, boolean traced) {
+        end();
+        if (shouldCommit()) {
+            this.inputLength = inputLength;
+            this.steps = steps;
+            this.accepted = outcome == RecognitionResult.Outcome.ACCEPTED;
+            this.outcome = outcome.label;
+            this.maxStackDepth = maxStackDepth;
+            this.traced = traced;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package edu.njit.cs314;
+
+/**
+ * Receives the shifts and reductions of a run as they happen, for semantic actions
+ * that evaluate the input in one pass without a tree or a trace. Events come in the
+ * order of a shift-reduce parse: a symbol is shifted before every reduction that
+ * includes it, and after every reduction that only looked at it as lookahead. The
+ * right side of a reduction is the last rhs.size() symbols shifted or reduced.
+ * No objects are allocated per event.
+ * Date created: 10/18/26
+ */
+public interface ParseListener {
+
+    /**
+     * Called when an input symbol joins the sentential form
+     * @param symbol
+     */
+    void onShift(TerminalToken symbol);
+
+    /**
+     * Called when the symbols on the right side of the rule are replaced by its left side
+     * @param rule
+     */
+    void onReduce(DPDA.Rule rule);
+}
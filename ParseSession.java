@@ -0,0 +1,277 @@
+package edu.njit.cs314;
+
+import java.util.List;
+
+/**
+ * A run of a DPDA that receives its input incrementally. Each token is consumed
+ * as soon as it is fed, and epsilon moves which do not depend on the next input
+ * symbol are made right away, so a rejection is reported at the first token
+ * that cannot be read and the input never has to be held in memory.
+ * A session enforces RunLimits and stops a run of epsilon moves that cycles without
+ * consuming input. It can be cancelled from another thread with cancel(), or by
+ * interrupting the thread that runs it; the deadline and cancellation are checked
+ * every CHECK_INTERVAL steps. A ParseListener given to a session hears of its
+ * shifts and reductions as they happen, e.g. a ParseTree that is built as the
+ * session goes and needs no trace of the run. While metrics are on for the DPDA a
+ * session records its run into them, see DPDAMetrics. Runs, and runs stopped by a
+ * limit, are reported to Java Flight Recorder as ParseEvent and LimitEvent.
+ * Sessions are created by DPDA.newSession().
+ * Date created: 10/18/26
+ */
+public class ParseSession {
+
+    private static final int CHECK_INTERVAL = 1024;
+
+    private final TransitionTable table;
+    private final IntStack stack = new IntStack();
+    private final RunLimits limits;
+    private final long deadline;
+    private final EpsilonLoopDetector loops;
+    private final ReductionSequencer reductions; // null without a listener
+    private final ParseTree tree; // null unless a tree is built
+    private final DPDAMetrics.Run run; // null while metrics are off
+    // true if each step is passed to reductions or run, which rules out macro transitions
+    private final boolean observed;
+    // id of the input symbol that could not be read, see DPDAMetrics.Run.finish()
+    private int rejectedInput = DPDAMetrics.END_OF_INPUT;
+    // null unless a JFR recording has ParseEvent enabled
+    private final ParseEvent event = ParseEvent.beginIfEnabled();
+    private int currState;
+    private int consumed;
+    private int steps;
+    private int untilCheck = CHECK_INTERVAL;
+    private volatile boolean cancelled;
+    // why the run ended early, null while it can go on
+    private RecognitionResult.Outcome stopped;
+    private RecognitionResult result;
+
+    ParseSession(TransitionTable table, int startState, RunLimits limits,
+                 ParseListener listener, DPDAMetrics metrics) {
+        this.table = table;
+        this.currState = startState;
+        this.limits = limits;
+        long now = System.nanoTime();
+        this.deadline = limits.timeoutNanos > Long.MAX_VALUE - now ? Long.MAX_VALUE
+                : now + limits.timeoutNanos;
+        this.loops = new EpsilonLoopDetector(table.maxStackTop());
+        this.reductions = listener == null ? null
+                : new ReductionSequencer(table.symbols(), listener);
+        this.tree = listener instanceof ParseTree ? (ParseTree) listener : null;
+        this.run = metrics == null ? null : metrics.newRun();
+        this.observed = reductions != null || run != null;
+    }
+
+    /**
+     * Reads one input symbol
+     * @param token
+     * @return false if the input has been rejected
+     */
+    public boolean feed(TerminalToken token) {
+        return feedSymbol(table.inputId(token));
+    }
+
+    /**
+     * Reads a chunk of input symbols, stopping at the first one that is rejected
+     * @param tokens
+     * @return false if the input has been rejected
+     */
+    public boolean feed(List<TerminalToken> tokens) {
+        for (TerminalToken token : tokens) {
+            if (!feed(token)) {
+                return false;
+            }
+        }
+        return stopped == null;
+    }
+
+    /**
+     * Reads one input symbol given by its id
+     * @param inputId
+     * @return false if the input has been rejected
+     */
+    boolean feedSymbol(int inputId) {
+        if (result != null) {
+            throw new IllegalStateException("Session already finished");
+        }
+        if (stopped != null) {
+            return false;
+        }
+        loops.reset();
+        while (true) {
+            CompiledTransition transition = advance(table.next(currState, inputId, stack));
+            if (transition == null) {
+                stopped = RecognitionResult.Outcome.REJECTED;
+                rejectedInput = inputId;
+                return false;
+            }
+            if (!step(transition)) {
+                return false;
+            }
+            if (transition.input != SymbolTable.EPSILON) {
+                consumed++;
+                break;
+            }
+        }
+        // moves that every continuation of the input would make. With one symbol or
+        // less on the stack the input might end here, so those moves wait for finish()
+        loops.reset();
+        while (stack.size() > 1) {
+            CompiledTransition transition = advance(table.nextWithoutInput(currState, stack));
+            if (transition == null) {
+                break;
+            }
+            if (!step(transition)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param transition the transition for the next step or null
+     * @return the macro transition for the steps certain to follow, unless a listener
+     * has to hear of each step, metrics count them or they would pass the step limit
+     */
+    private CompiledTransition advance(CompiledTransition transition) {
+        if (observed || transition == null) {
+            return transition;
+        }
+        CompiledTransition macro = table.macro(transition, stack.size());
+        return macro.steps > limits.maxSteps - steps ? transition : macro;
+    }
+
+    /**
+     * Makes the step and checks the limits of the run
+     * @param transition
+     * @return false if the run has to stop
+     */
+    private boolean step(CompiledTransition transition) {
+        if (transition.steps > limits.maxSteps - steps) {
+            stopped = RecognitionResult.Outcome.STEP_LIMIT;
+            return false;
+        }
+        int base = stack.size() - transition.pop.length;
+        if (observed) {
+            if (reductions != null) {
+                reductions.step(transition);
+            }
+            if (run != null) {
+                run.step(transition.index, transition.currState,
+                        transition.input == SymbolTable.EPSILON, base + transition.push.length);
+            }
+        }
+        transition.apply(stack);
+        currState = transition.nextState;
+        steps += transition.steps;
+        if (stack.size() > limits.maxStackDepth) {
+            stopped = RecognitionResult.Outcome.STACK_LIMIT;
+        } else if (transition.input == SymbolTable.EPSILON && loops.step(currState, stack, base)) {
+            stopped = RecognitionResult.Outcome.EPSILON_LOOP;
+        } else if (--untilCheck == 0) {
+            untilCheck = CHECK_INTERVAL;
+            checkInterrupts();
+        }
+        return stopped == null;
+    }
+
+    private void checkInterrupts() {
+        if (cancelled || Thread.currentThread().isInterrupted()) {
+            stopped = RecognitionResult.Outcome.CANCELLED;
+        } else if (deadline != Long.MAX_VALUE && System.nanoTime() - deadline > 0) {
+            stopped = RecognitionResult.Outcome.DEADLINE;
+        }
+    }
+
+    /**
+     * Asks the session to stop; the run ends with Outcome.CANCELLED at its next check.
+     * May be called from any thread
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Signals the end of input and runs the remaining epsilon moves
+     * @return the outcome of the run
+     */
+    public RecognitionResult finish() {
+        if (result != null) {
+            return result;
+        }
+        if (stopped == null) {
+            checkInterrupts();
+        }
+        loops.reset();
+        while (stopped == null && stack.size() > 1) {
+            CompiledTransition transition = advance(table.next(currState, SymbolTable.NONE, stack));
+            if (transition == null) {
+                stopped = RecognitionResult.Outcome.REJECTED;
+            } else {
+                step(transition);
+            }
+        }
+        RecognitionResult.Outcome outcome = stopped;
+        if (outcome == null) {
+            outcome = steps > 0 && table.isAccepting(currState)
+                    ? RecognitionResult.Outcome.ACCEPTED : RecognitionResult.Outcome.REJECTED;
+        }
+        if (reductions != null) {
+            reductions.finish();
+        }
+        if (run != null) {
+            run.finish(outcome, steps, currState, rejectedInput);
+        }
+        if (event != null) {
+            event.finish(consumed, steps, outcome, stack.maxSize(), false);
+        }
+        if (outcome.isStopped()) {
+            LimitEvent limit = new LimitEvent();
+            if (limit.shouldCommit()) {
+                limit.outcome = outcome.label;
+                limit.steps = steps;
+                limit.inputIndex = consumed;
+                limit.state = currState;
+                limit.stackDepth = stack.size();
+                limit.commit();
+            }
+        }
+        result = new RecognitionResult(outcome, steps, consumed, currState);
+        return result;
+    }
+
+    /**
+     * @return the parse tree of the accepted input, or null if the session does not
+     * build one, has not finished, did not accept or its rules did not form a tree
+     */
+    public ParseTree parseTree() {
+        if (tree == null || result == null || !result.accepted || !tree.isComplete()) {
+            return null;
+        }
+        return tree;
+    }
+
+    /**
+     * @return true if the input has been rejected or the run was stopped by a limit
+     */
+    public boolean isRejected() {
+        return stopped != null;
+    }
+
+    /**
+     * @return number of input symbols consumed so far
+     */
+    public int consumed() {
+        return consumed;
+    }
+
+    /**
+     * @return the largest number of symbols the stack has held so far
+     */
+    public int maxStackDepth() {
+        return stack.maxSize();
+    }
+
+    public int state() {
+        return currState;
+    }
+}
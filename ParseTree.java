@@ -0,0 +1,169 @@
+package edu.njit.cs314;
+
+import java.util.*;
+
+/**
+ * Parse tree built while a DPDA runs, as a ParseListener of its shifts and reductions.
+ * Nodes live in arena arrays and are numbered in the order they are created; the
+ * children of a node are linked through nextSibling. A shifted input symbol becomes
+ * a leaf, and a rule takes the nodes for its right side off the top of a stack of
+ * subtrees and replaces them by a node for its left side. The tree is complete when
+ * a single subtree is left.
+ * Date created: 10/18/26
+ */
+public class ParseTree implements ParseListener {
+
+    public static final int NO_NODE = -1;
+
+    private GrammarToken[] symbols = new GrammarToken[16];
+    private int[] firstChild = new int[16];
+    private int[] nextSibling = new int[16];
+    private int nNodes;
+    // roots of the subtrees not yet reduced, rightmost on top
+    private final IntStack pending = new IntStack();
+    // set when a rule does not match the subtrees on top
+    private boolean broken;
+
+    public ParseTree() {
+    }
+
+    private int newNode(GrammarToken symbol) {
+        if (nNodes == symbols.length) {
+            symbols = Arrays.copyOf(symbols, 2 * nNodes);
+            firstChild = Arrays.copyOf(firstChild, 2 * nNodes);
+            nextSibling = Arrays.copyOf(nextSibling, 2 * nNodes);
+        }
+        int node = nNodes++;
+        symbols[node] = symbol;
+        firstChild[node] = NO_NODE;
+        nextSibling[node] = NO_NODE;
+        return node;
+    }
+
+    /**
+     * Adds a leaf for a shifted input symbol
+     * @param symbol
+     */
+    public void onShift(TerminalToken symbol) {
+        if (!broken) {
+            pending.push(newNode(symbol));
+        }
+    }
+
+    /**
+     * Replaces the subtrees for the right side of the rule by a node for its left side
+     * @param rule
+     */
+    public void onReduce(DPDA.Rule rule) {
+        if (broken) {
+            return;
+        }
+        int n = rule.rhs.size();
+        if (!matches(rule)) {
+            broken = true;
+            return;
+        }
+        int parent = newNode(rule.lhs);
+        int next = NO_NODE;
+        for (int k = 0; k < n; k++) {
+            int child = pending.pop();
+            nextSibling[child] = next;
+            next = child;
+        }
+        firstChild[parent] = next;
+        pending.push(parent);
+    }
+
+    private boolean matches(DPDA.Rule rule) {
+        int n = rule.rhs.size();
+        if (n > pending.size()) {
+            return false;
+        }
+        for (int k = 0; k < n; k++) {
+            if (!symbols[pending.peek(n - 1 - k)].equals(rule.rhs.get(k))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the rules reduced the input to a single tree
+     */
+    public boolean isComplete() {
+        return !broken && pending.size() == 1;
+    }
+
+    /**
+     * @return the root, or NO_NODE if the tree is not complete
+     */
+    public int root() {
+        return isComplete() ? pending.peek() : NO_NODE;
+    }
+
+    public int size() {
+        return nNodes;
+    }
+
+    public GrammarToken symbol(int node) {
+        return symbols[node];
+    }
+
+    /**
+     * @param node
+     * @return leftmost child or NO_NODE for a leaf
+     */
+    public int firstChild(int node) {
+        return firstChild[node];
+    }
+
+    /**
+     * @param node
+     * @return next child of the same parent or NO_NODE
+     */
+    public int nextSibling(int node) {
+        return nextSibling[node];
+    }
+
+    public boolean isLeaf(int node) {
+        return !(symbols[node] instanceof VariableToken);
+    }
+
+    /**
+     * @return the tree in bracketed form, e.g. S(E(T(F(n)))$), or the pending
+     * subtrees side by side if it is not complete
+     */
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int k = pending.size() - 1; k >= 0; k--) {
+            append(builder, pending.peek(k));
+        }
+        return builder.toString();
+    }
+
+    private void append(StringBuilder builder, int root) {
+        // iterative walk, trees of long inputs are deep
+        IntStack open = new IntStack();
+        int node = root;
+        while (true) {
+            builder.append(symbols[node]);
+            if (firstChild[node] != NO_NODE) {
+                builder.append('(');
+                open.push(node);
+                node = firstChild[node];
+                continue;
+            }
+            while (nextSibling[node] == NO_NODE) {
+                if (open.isEmpty()) {
+                    return;
+                }
+                node = open.pop();
+                builder.append(')');
+                if (node == root) {
+                    return;
+                }
+            }
+            node = nextSibling[node];
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package edu.njit.cs314;
+
+/**
+ * Immutable stack of symbol ids stored as a linked list from the top down.
+ * Pushing and popping return a new stack that shares the untouched part of the
+ * old one, so keeping the stack of every configuration of a run only costs the
+ * symbols each transition pushes.
+ * Date created: 10/18/26
+ */
+final class PersistentStack {
+
+    public static final PersistentStack EMPTY = new PersistentStack(0, null);
+
+    public final int top;
+    public final PersistentStack below;
+    public final int size;
+
+    private PersistentStack(int top, PersistentStack below) {
+        this.top = top;
+        this.below = below;
+        this.size = below == null ? 0 : below.size + 1;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public PersistentStack push(int id) {
+        return new PersistentStack(id, this);
+    }
+
+    /**
+     * @param n
+     * @return the stack without its top n symbols
+     */
+    public PersistentStack pop(int n) {
+        PersistentStack result = this;
+        for (int k = 0; k < n; k++) {
+            result = result.below;
+        }
+        return result;
+    }
+
+    /**
+     * Pops the stack top of the transition and pushes its replacement
+     * @param transition
+     * @return the resulting stack
+     */
+    public PersistentStack apply(CompiledTransition transition) {
+        PersistentStack result = pop(transition.pop.length);
+        for (int k = transition.push.length - 1; k >= 0; k--) {
+            result = result.push(transition.push[k]);
+        }
+        return result;
+    }
+
+    /**
+     * Compares the contents of two stacks, walking down only until they share a node
+     * @param other
+     * @return true if both stacks hold the same symbols
+     */
+    public boolean sameAs(PersistentStack other) {
+        PersistentStack a = this;
+        PersistentStack b = other;
+        while (a != b) {
+            if (a.size != b.size || a.top != b.top) {
+                return false;
+            }
+            a = a.below;
+            b = b.below;
+        }
+        return true;
+    }
+
+    /**
+     * @return the symbols of the stack, top of stack first
+     */
+    public int[] toArray() {
+        int[] ids = new int[size];
+        PersistentStack node = this;
+        for (int k = 0; k < ids.length; k++) {
+            ids[k] = node.top;
+            node = node.below;
+        }
+        return ids;
+    }
+}
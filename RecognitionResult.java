@@ -0,0 +1,50 @@
+package edu.njit.cs314;
+
+/**
+ * Outcome of running a DPDA on an input without keeping the configurations
+ * Date created: 10/18/26
+ */
+public class RecognitionResult {
+
+    public enum Outcome {
+        ACCEPTED("accept"),
+        REJECTED("reject"),
+        STEP_LIMIT("step-limit"),
+        STACK_LIMIT("stack-limit"),
+        DEADLINE("deadline"),
+        CANCELLED("cancelled"),
+        EPSILON_LOOP("epsilon-loop");
+
+        public final String label;
+
+        Outcome(String label) {
+            this.label = label;
+        }
+
+        /**
+         * @return true if the run was stopped before it could accept or reject
+         */
+        public boolean isStopped() {
+            return this != ACCEPTED && this != REJECTED;
+        }
+    }
+
+    public final Outcome outcome;
+    public final boolean accepted;
+    public final int steps;
+    public final int inputIndex; // index of the first input symbol not consumed
+    public final int finalState;
+
+    public RecognitionResult(Outcome outcome, int steps, int inputIndex, int finalState) {
+        this.outcome = outcome;
+        this.accepted = outcome == Outcome.ACCEPTED;
+        this.steps = steps;
+        this.inputIndex = inputIndex;
+        this.finalState = finalState;
+    }
+
+    public String toString() {
+        return outcome.label + " at input " + inputIndex
+                + " in state " + finalState + " after " + steps + " steps";
+    }
+}
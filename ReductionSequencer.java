@@ -0,0 +1,96 @@
+package edu.njit.cs314;
+
+import java.util.List;
+
+/**
+ * Puts the input symbols consumed and the rules fired by a run into shift-reduce
+ * order for a ParseListener. A transition without rules that reads a symbol shifts
+ * it. A DPDA reduces on the transition that reads the lookahead symbol, so the
+ * symbol read by a transition with rules is held back, after its rules, until a
+ * transition without rules moves it off the stack, the next symbol is read, or a
+ * rule does not match the symbols shifted or reduced before it.
+ * The grammar symbols seen so far are kept as ids on an IntStack to match rules
+ * against, so no event allocates.
+ * Date created: 10/18/26
+ */
+class ReductionSequencer {
+
+    private final SymbolTable symbols;
+    private final ParseListener listener;
+    // grammar symbols of the sentential form left of the lookahead, rightmost on top
+    private final IntStack form = new IntStack();
+    // id of the input symbol whose shift is held back or SymbolTable.NONE
+    private int lookAhead = SymbolTable.NONE;
+
+    public ReductionSequencer(SymbolTable symbols, ParseListener listener) {
+        this.symbols = symbols;
+        this.listener = listener;
+    }
+
+    /**
+     * Reports the rules and input symbol of a step, which must not be a macro transition
+     * @param transition
+     */
+    public void step(CompiledTransition transition) {
+        List<DPDA.Rule> rules = transition.rulesForReduction;
+        int nRules = rules == null ? 0 : rules.size();
+        if (nRules == 0) {
+            releaseLookAhead();
+            if (transition.input != SymbolTable.EPSILON) {
+                lookAhead = transition.input;
+                releaseLookAhead();
+            }
+            return;
+        }
+        for (int k = 0; k < nRules; k++) {
+            reduce(rules.get(k));
+        }
+        if (transition.input != SymbolTable.EPSILON) {
+            releaseLookAhead();
+            lookAhead = transition.input;
+        }
+    }
+
+    private void releaseLookAhead() {
+        if (lookAhead != SymbolTable.NONE) {
+            form.push(lookAhead);
+            listener.onShift((TerminalToken) symbols.symbol(lookAhead));
+            lookAhead = SymbolTable.NONE;
+        }
+    }
+
+    /**
+     * Records a rule that fired. A rule that matches neither way is still passed on,
+     * the listener decides what to make of it
+     * @param rule
+     */
+    private void reduce(DPDA.Rule rule) {
+        if (!matches(rule)) {
+            releaseLookAhead();
+        }
+        int n = Math.min(rule.rhs.size(), form.size());
+        form.pop(n);
+        form.push(symbols.id(rule.lhs));
+        listener.onReduce(rule);
+    }
+
+    private boolean matches(DPDA.Rule rule) {
+        int n = rule.rhs.size();
+        if (n > form.size()) {
+            return false;
+        }
+        for (int k = 0; k < n; k++) {
+            if (form.peek(n - 1 - k) != symbols.id(rule.rhs.get(k))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Shifts the symbol held back, at the end of input
+     */
+    public void finish() {
+        releaseLookAhead();
+    }
+}
@@ -0,0 +1,163 @@
+package edu.njit.cs314;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Rightmost derivation reconstructed from the reductions of an accepting run, read
+ * one sentential form at a time. The current form is kept as a linked list of nodes
+ * in arena arrays, together with its variables in left to right order. Each rule
+ * replaces the rightmost occurrence of its left side by its right side in time
+ * proportional to the right side, so rebuilding the whole derivation is linear in
+ * the number of symbols it introduces; only writing out a form costs its length.
+ * Date created: 10/18/26
+ */
+class RightmostDerivation implements Iterator<List<GrammarToken>> {
+
+    private static final int NO_NODE = -1;
+
+    // rules in derivation order, i.e. the reductions of the run in reverse
+    private final List<DPDA.Rule> rules;
+    private int nextRule;
+    // arena of nodes of the current sentential form
+    private GrammarToken[] symbols = new GrammarToken[16];
+    private int[] nextNode = new int[16];
+    private int[] prevNode = new int[16];
+    private int nNodes;
+    private int head = NO_NODE;
+    // nodes of the variables of the current form, rightmost last
+    private final List<Integer> variables = new ArrayList<>();
+    private boolean started;
+
+    /**
+     * @param reductions the rules in the order the run reduced by them
+     */
+    public RightmostDerivation(List<DPDA.Rule> reductions) {
+        rules = new ArrayList<>(reductions);
+        Collections.reverse(rules);
+    }
+
+    /**
+     * Collects the reductions of the transitions in a trace
+     * @param transitions the transitions of the run in order
+     * @return derivation of the input the run accepted
+     */
+    public static RightmostDerivation of(List<DPDA.Transition> transitions) {
+        List<DPDA.Rule> reductions = new ArrayList<>();
+        for (DPDA.Transition transition : transitions) {
+            if (transition.rulesForReduction != null) {
+                reductions.addAll(transition.rulesForReduction);
+            }
+        }
+        return new RightmostDerivation(reductions);
+    }
+
+    /**
+     * @return number of rules of the derivation
+     */
+    public int length() {
+        return rules.size();
+    }
+
+    public boolean hasNext() {
+        return started ? nextRule < rules.size() : !rules.isEmpty();
+    }
+
+    /**
+     * @return the next sentential form as a new list
+     */
+    public List<GrammarToken> next() {
+        advance();
+        List<GrammarToken> form = new ArrayList<>();
+        for (int node = head; node != NO_NODE; node = nextNode[node]) {
+            form.add(symbols[node]);
+        }
+        return form;
+    }
+
+    /**
+     * Writes every remaining sentential form, separated by -->, without keeping
+     * more than the current form in memory
+     * @param out
+     */
+    public void writeTo(Appendable out) throws IOException {
+        boolean first = true;
+        StringBuilder builder = new StringBuilder();
+        while (hasNext()) {
+            advance();
+            builder.setLength(0);
+            if (!first) {
+                builder.append("-->");
+            }
+            for (int node = head; node != NO_NODE; node = nextNode[node]) {
+                builder.append(symbols[node]);
+            }
+            out.append(builder);
+            first = false;
+        }
+    }
+
+    /**
+     * Moves to the next sentential form. The first form is the left side of the
+     * first rule alone, each further form applies one rule
+     */
+    private void advance() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        if (!started) {
+            started = true;
+            head = newNode(rules.get(0).lhs, NO_NODE);
+            variables.add(head);
+            return;
+        }
+        DPDA.Rule rule = rules.get(nextRule++);
+        int k = variables.size() - 1;
+        while (k >= 0 && !symbols[variables.get(k)].equals(rule.lhs)) {
+            k--;
+        }
+        if (k < 0) {
+            // nothing to replace, the form stays the same
+            return;
+        }
+        int replaced = variables.get(k);
+        List<Integer> introduced = new ArrayList<>();
+        int before = prevNode[replaced];
+        int after = nextNode[replaced];
+        for (GrammarToken symbol : rule.rhs) {
+            int node = newNode(symbol, before);
+            if (symbol instanceof VariableToken) {
+                introduced.add(node);
+            }
+            before = node;
+        }
+        link(before, after);
+        // k is the last index unless the rules are not a rightmost derivation
+        variables.remove(k);
+        variables.addAll(k, introduced);
+    }
+
+    private int newNode(GrammarToken symbol, int before) {
+        if (nNodes == symbols.length) {
+            symbols = Arrays.copyOf(symbols, 2 * nNodes);
+            nextNode = Arrays.copyOf(nextNode, 2 * nNodes);
+            prevNode = Arrays.copyOf(prevNode, 2 * nNodes);
+        }
+        int node = nNodes++;
+        symbols[node] = symbol;
+        link(before, node);
+        nextNode[node] = NO_NODE;
+        return node;
+    }
+
+    private void link(int before, int after) {
+        if (before == NO_NODE) {
+            head = after;
+        } else {
+            nextNode[before] = after;
+        }
+        if (after != NO_NODE) {
+            prevNode[after] = before;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package edu.njit.cs314;
+
+/**
+ * Limits on one run of a DPDA, so that an automaton with an epsilon cycle or a
+ * hostile input cannot hold a thread for ever. A run that exceeds a limit stops
+ * with the matching RecognitionResult.Outcome instead of accepting or rejecting.
+ * Date created: 10/18/26
+ */
+public class RunLimits {
+
+    public static final RunLimits NONE = new RunLimits(Integer.MAX_VALUE, Integer.MAX_VALUE,
+            Long.MAX_VALUE);
+
+    public final int maxSteps;
+    public final int maxStackDepth;
+    public final long timeoutNanos; // measured from the start of the run, Long.MAX_VALUE for none
+
+    /**
+     * @param maxSteps most steps a run may make
+     * @param maxStackDepth most symbols the stack may hold
+     * @param timeoutNanos wall clock time a run may take, Long.MAX_VALUE for no deadline
+     */
+    public RunLimits(int maxSteps, int maxStackDepth, long timeoutNanos) {
+        if (maxSteps <= 0 || maxStackDepth <= 0 || timeoutNanos <= 0) {
+            throw new IllegalArgumentException("Run limits must be positive");
+        }
+        this.maxSteps = maxSteps;
+        this.maxStackDepth = maxStackDepth;
+        this.timeoutNanos = timeoutNanos;
+    }
+
+    public RunLimits withMaxSteps(int maxSteps) {
+        return new RunLimits(maxSteps, maxStackDepth, timeoutNanos);
+    }
+
+    public RunLimits withMaxStackDepth(int maxStackDepth) {
+        return new RunLimits(maxSteps, maxStackDepth, timeoutNanos);
+    }
+
+    public RunLimits withTimeoutNanos(long timeoutNanos) {
+        return new RunLimits(maxSteps, maxStackDepth, timeoutNanos);
+    }
+
+    public String toString() {
+        return "max steps " + maxSteps + ", max stack depth " + maxStackDepth
+                + (timeoutNanos == Long.MAX_VALUE ? "" : ", timeout " + timeoutNanos + " ns");
+    }
+}
@@ -7,6 +7,9 @@ package edu.njit.cs314;
 public abstract class StackToken {
 
     public final String value;
+    // set for the canonical tokens created by the symbol table of an automaton
+    SymbolTable owner;
+    int id = SymbolTable.NONE;
 
     public StackToken(String value) {
         this.value = value;
@@ -18,13 +21,28 @@ public abstract class StackToken {
     }
 
     public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
         if (!(obj instanceof StackToken)) {
             return false;
         }
         StackToken other = (StackToken) obj;
+        if (sameTable(other)) {
+            return false;
+        }
         return other.value.equals(this.value);
     }
 
+    /**
+     * @param other
+     * @return true if both tokens are canonical tokens of the same automaton, which
+     * are equal only if they are the same object
+     */
+    protected boolean sameTable(StackToken other) {
+        return owner != null && owner == other.owner;
+    }
+
     @Override
     public String toString() {
         return "" + value;
@@ -0,0 +1,300 @@
+package edu.njit.cs314;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Decision tree over the stack tops of the transitions of a compiled DPDA. There is
+ * one tree for each pair of state and input symbol. Matching reads the live stack
+ * from the top one symbol at a time and follows the edge for that symbol, so it costs
+ * the depth of the stack top rather than the number of transitions of the state.
+ * An edge for StateToken.WILDCARD is followed when the symbol is a state and the edge
+ * for the symbol itself leads nowhere, which finds the most specific stack top first.
+ * Edges are kept in one open addressing hash table keyed by node and symbol id.
+ * The arrays of the tree are written to DPDA snapshots as they are, see write().
+ * Date created: 10/18/26
+ */
+class StackTopTrie {
+
+    private static final int NO_NODE = -1;
+
+    // [state][input] -> root node or NO_NODE
+    private final int[] roots;
+    // node -> transition whose stack top ends at the node
+    private final CompiledTransition[] ending;
+    // node -> child for StateToken.WILDCARD or NO_NODE
+    private final int[] wildcardChild;
+    // edges: key is node << 32 | symbol id, keys[k] == 0 marks an empty slot
+    private final long[] edgeKeys;
+    private final int[] edgeChildren;
+    private final int edgeMask;
+    private final boolean[] isState;
+
+    /**
+     * @param transitions transitions that have a non empty stack top, in order of precedence
+     * @param nSlots number of state and input symbol pairs
+     * @param nInputs number of input symbol ids
+     * @param isState isState[id] is true if symbol id is a state
+     */
+    public StackTopTrie(List<CompiledTransition> transitions, int nSlots, int nInputs,
+                        boolean[] isState) {
+        this.isState = isState;
+        roots = new int[nSlots];
+        Arrays.fill(roots, NO_NODE);
+        List<CompiledTransition> endingList = new ArrayList<>();
+        List<Integer> wildcardList = new ArrayList<>();
+        Map<Long,Integer> edges = new HashMap<>();
+        for (CompiledTransition transition : transitions) {
+            int slot = transition.currState * nInputs + transition.input;
+            if (roots[slot] == NO_NODE) {
+                roots[slot] = newNode(endingList, wildcardList);
+            }
+            int node = roots[slot];
+            for (int id : transition.pop) {
+                int child;
+                if (id == SymbolTable.WILDCARD) {
+                    child = wildcardList.get(node);
+                    if (child == NO_NODE) {
+                        child = newNode(endingList, wildcardList);
+                        wildcardList.set(node, child);
+                    }
+                } else {
+                    Integer existing = edges.get(key(node, id));
+                    if (existing == null) {
+                        child = newNode(endingList, wildcardList);
+                        edges.put(key(node, id), child);
+                    } else {
+                        child = existing;
+                    }
+                }
+                node = child;
+            }
+            if (endingList.get(node) == null) {
+                endingList.set(node, transition);
+            }
+        }
+        ending = endingList.toArray(new CompiledTransition[0]);
+        wildcardChild = new int[wildcardList.size()];
+        for (int node = 0; node < wildcardChild.length; node++) {
+            wildcardChild[node] = wildcardList.get(node);
+        }
+        int capacity = Integer.highestOneBit(Math.max(2 * edges.size(), 2) - 1) << 1;
+        edgeKeys = new long[capacity];
+        edgeChildren = new int[capacity];
+        edgeMask = capacity - 1;
+        for (Map.Entry<Long,Integer> edge : edges.entrySet()) {
+            int k = hash(edge.getKey()) & edgeMask;
+            while (edgeKeys[k] != 0) {
+                k = (k + 1) & edgeMask;
+            }
+            edgeKeys[k] = edge.getKey();
+            edgeChildren[k] = edge.getValue();
+        }
+    }
+
+    private StackTopTrie(int[] roots, CompiledTransition[] ending, int[] wildcardChild,
+                         long[] edgeKeys, int[] edgeChildren, boolean[] isState) {
+        this.roots = roots;
+        this.ending = ending;
+        this.wildcardChild = wildcardChild;
+        this.edgeKeys = edgeKeys;
+        this.edgeChildren = edgeChildren;
+        this.edgeMask = edgeKeys.length - 1;
+        this.isState = isState;
+    }
+
+    /**
+     * Writes the arrays of the tree: the number of slots with a root followed by each
+     * such slot and its root, the number of nodes, the
+     * index of the transition ending at each node (-1 if none) and its wildcard child,
+     * then the capacity of the edge table, its keys as longs and its children
+     * @param out
+     */
+    public void write(DataOutputStream out) throws IOException {
+        int nRoots = 0;
+        for (int root : roots) {
+            if (root != NO_NODE) {
+                nRoots++;
+            }
+        }
+        out.writeInt(nRoots);
+        for (int slot = 0; slot < roots.length; slot++) {
+            if (roots[slot] != NO_NODE) {
+                out.writeInt(slot);
+                out.writeInt(roots[slot]);
+            }
+        }
+        out.writeInt(ending.length);
+        for (CompiledTransition transition : ending) {
+            out.writeInt(transition == null ? -1 : transition.index);
+        }
+        writeInts(out, wildcardChild);
+        out.writeInt(edgeKeys.length);
+        for (long key : edgeKeys) {
+            out.writeLong(key);
+        }
+        writeInts(out, edgeChildren);
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    /**
+     * Reads a tree written by write()
+     * @param buffer positioned at the tree, left after it
+     * @param nSlots number of state and input symbol pairs
+     * @param transitions the compiled transitions by index
+     * @param isState isState[id] is true if symbol id is a state
+     * @return the tree
+     * @throws IllegalArgumentException if a node or transition index is out of range
+     */
+    public static StackTopTrie read(ByteBuffer buffer, int nSlots, CompiledTransition[] transitions,
+                                    boolean[] isState) {
+        int[] roots = new int[nSlots];
+        Arrays.fill(roots, NO_NODE);
+        for (int k = buffer.getInt(); k > 0; k--) {
+            int slot = buffer.getInt();
+            roots[slot] = buffer.getInt();
+        }
+        int nNodes = buffer.getInt();
+        CompiledTransition[] ending = new CompiledTransition[nNodes];
+        for (int node = 0; node < nNodes; node++) {
+            int index = buffer.getInt();
+            ending[node] = index == -1 ? null : transitions[index];
+        }
+        int[] wildcardChild = readInts(buffer, nNodes);
+        int capacity = buffer.getInt();
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Edge table capacity " + capacity);
+        }
+        long[] edgeKeys = new long[capacity];
+        buffer.asLongBuffer().get(edgeKeys);
+        buffer.position(buffer.position() + 8 * capacity);
+        int[] edgeChildren = readInts(buffer, capacity);
+        checkNodes(roots, nNodes);
+        checkNodes(wildcardChild, nNodes);
+        checkNodes(edgeChildren, nNodes);
+        return new StackTopTrie(roots, ending, wildcardChild, edgeKeys, edgeChildren, isState);
+    }
+
+    private static int[] readInts(ByteBuffer buffer, int n) {
+        int[] values = new int[n];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + 4 * n);
+        return values;
+    }
+
+    private static void checkNodes(int[] nodes, int nNodes) {
+        for (int node : nodes) {
+            if (node < NO_NODE || node >= nNodes) {
+                throw new IllegalArgumentException("Node " + node + " of " + nNodes);
+            }
+        }
+    }
+
+    private static int newNode(List<CompiledTransition> endingList, List<Integer> wildcardList) {
+        endingList.add(null);
+        wildcardList.add(NO_NODE);
+        return endingList.size() - 1;
+    }
+
+    // node + 1 so that no key is 0
+    private static long key(int node, int id) {
+        return ((long) (node + 1) << 32) | id;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private int child(int node, int id) {
+        long key = key(node, id);
+        int k = hash(key) & edgeMask;
+        while (edgeKeys[k] != 0) {
+            if (edgeKeys[k] == key) {
+                return edgeChildren[k];
+            }
+            k = (k + 1) & edgeMask;
+        }
+        return NO_NODE;
+    }
+
+    /**
+     * Finds the transition whose stack top matches the top of the stack
+     * @param slot state * nInputs + input symbol id
+     * @param stack
+     * @return the transition or null if none matches
+     */
+    public CompiledTransition match(int slot, IntStack stack) {
+        int root = roots[slot];
+        return root == NO_NODE ? null : match(root, stack, 0);
+    }
+
+    /**
+     * Matches against a stack of which only the top symbols are known
+     * @param slot state * nInputs + input symbol id
+     * @param known the known symbols, top of stack first
+     * @param found receives the matching transition
+     * @return true if a transition matches whatever is below the known symbols,
+     * false if that depends on the unknown symbols or nothing matches
+     */
+    public boolean matchKnown(int slot, int[] known, CompiledTransition[] found) {
+        int root = roots[slot];
+        return root != NO_NODE && matchKnown(root, known, 0, found) == FOUND;
+    }
+
+    private static final int FOUND = 1;
+    private static final int NOT_FOUND = 0;
+    private static final int UNDECIDED = -1;
+
+    private int matchKnown(int node, int[] known, int depth, CompiledTransition[] found) {
+        if (ending[node] != null) {
+            found[0] = ending[node];
+            return FOUND;
+        }
+        if (depth >= known.length) {
+            return UNDECIDED;
+        }
+        int id = known[depth];
+        int next = child(node, id);
+        if (next != NO_NODE) {
+            int result = matchKnown(next, known, depth + 1, found);
+            if (result != NOT_FOUND) {
+                return result;
+            }
+        }
+        next = wildcardChild[node];
+        if (next != NO_NODE && isState[id]) {
+            return matchKnown(next, known, depth + 1, found);
+        }
+        return NOT_FOUND;
+    }
+
+    private CompiledTransition match(int node, IntStack stack, int depth) {
+        if (ending[node] != null) {
+            return ending[node];
+        }
+        if (depth >= stack.size()) {
+            return null;
+        }
+        int id = stack.peek(depth);
+        int next = child(node, id);
+        if (next != NO_NODE) {
+            CompiledTransition transition = match(next, stack, depth + 1);
+            if (transition != null) {
+                return transition;
+            }
+        }
+        next = wildcardChild[node];
+        if (next != NO_NODE && isState[id]) {
+            return match(next, stack, depth + 1);
+        }
+        return null;
+    }
+}
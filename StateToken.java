@@ -6,7 +6,8 @@ package edu.njit.cs314;
  */
 public class StateToken extends StackToken {
 
-     public static StackToken WILDCARD = new StateToken(1000);
+     public static final StackToken WILDCARD = new StateToken(1000);
+     private static final int WILDCARD_HASH = -1;
      private final int state;
 
      public StateToken(int state) {
@@ -18,12 +19,31 @@ public class StateToken extends StackToken {
          return state;
      }
 
+    /**
+     * Hashes on the state. WILDCARD, which equals only itself, has a hash of its own
+     */
+    @Override
+    public int hashCode() {
+        return this == WILDCARD ? WILDCARD_HASH : Integer.hashCode(state);
+    }
+
     public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
         if (!(obj instanceof StateToken)) {
             return false;
         }
         StateToken other = (StateToken) obj;
-        return this == WILDCARD || other == WILDCARD || this.state() == other.state();
+        if (sameTable(other)) {
+            return false;
+        }
+        // matching any state on the stack is done by the compiled automaton, which
+        // knows WILDCARD by its id, so WILDCARD is not equal to the states it matches
+        if (this == WILDCARD || other == WILDCARD) {
+            return false;
+        }
+        return this.state() == other.state();
     }
 
 }
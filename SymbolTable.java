@@ -0,0 +1,201 @@
+package edu.njit.cs314;
+
+import java.util.*;
+
+/**
+ * Symbol pool of one automaton. Every terminal, variable, state and lookahead symbol
+ * of the automaton has one canonical token, created here, and a dense integer id, so
+ * that compiled tables can be indexed by symbol instead of searched. Canonical tokens
+ * remember their table and id, so looking them up needs no hashing, and two canonical
+ * tokens of the same table are equal only if they are the same object.
+ * Id 0 is reserved for epsilon, terminals come next so that input symbol ids are
+ * 0 .. nTerminals().
+ * Date created: 10/18/26
+ */
+class SymbolTable {
+
+    public static final int EPSILON = 0;
+    public static final int NONE = -1;
+    // stands for StateToken.WILDCARD in compiled stack tops, never pushed on a stack
+    public static final int WILDCARD = -2;
+
+    private final List<StackToken> symbols = new ArrayList<>();
+    private final Map<String,TerminalToken> terminals = new HashMap<>();
+    private final Map<String,VariableToken> variables = new HashMap<>();
+    private final Map<String,LookAheadToken> lookAheads = new HashMap<>();
+    private final Map<Integer,StateToken> states = new HashMap<>();
+    private final BitSet terminalIds = new BitSet();
+    private final BitSet variableIds = new BitSet();
+    private final BitSet stateIds = new BitSet();
+    private final BitSet lookAheadIds = new BitSet();
+    private final int nTerminals;
+
+    /**
+     * Creates the canonical tokens for the terminals, variables, states 0..nStates-1
+     * and a lookahead for each terminal
+     */
+    public SymbolTable(Collection<String> terminalValues, Collection<String> variableValues,
+                       int nStates) {
+        symbols.add(TerminalToken.EPSILON);
+        for (String value : sorted(terminalValues)) {
+            terminals.put(value, register(new TerminalToken(value), terminalIds));
+        }
+        nTerminals = terminals.size();
+        for (String value : sorted(variableValues)) {
+            variables.put(value, register(new VariableToken(value), variableIds));
+        }
+        for (int state = 0; state < nStates; state++) {
+            state(state);
+        }
+        for (String value : sorted(terminalValues)) {
+            lookAhead(terminals.get(value));
+        }
+    }
+
+    private static Set<String> sorted(Collection<String> values) {
+        return new TreeSet<>(values);
+    }
+
+    private <T extends StackToken> T register(T token, BitSet kind) {
+        token.owner = this;
+        token.id = symbols.size();
+        symbols.add(token);
+        kind.set(token.id);
+        return token;
+    }
+
+    /**
+     * @param value
+     * @return canonical terminal or null if value is not a terminal of the automaton
+     */
+    public TerminalToken terminal(String value) {
+        return terminals.get(value);
+    }
+
+    /**
+     * @param value
+     * @return canonical variable or null if value is not a variable of the automaton
+     */
+    public VariableToken variable(String value) {
+        return variables.get(value);
+    }
+
+    /**
+     * Returns the canonical token of the state, creating it if needed
+     * @param state
+     * @return canonical state token
+     */
+    public StateToken state(int state) {
+        StateToken token = states.get(state);
+        if (token == null) {
+            token = register(new StateToken(state), stateIds);
+            states.put(state, token);
+        }
+        return token;
+    }
+
+    /**
+     * Returns the canonical lookahead token for the terminal, creating it if needed
+     * @param terminal
+     * @return canonical lookahead token
+     */
+    public LookAheadToken lookAhead(TerminalToken terminal) {
+        LookAheadToken token = new LookAheadToken(terminal);
+        LookAheadToken existing = lookAheads.get(token.value);
+        if (existing != null) {
+            return existing;
+        }
+        lookAheads.put(token.value, register(token, lookAheadIds));
+        return token;
+    }
+
+    private StackToken canonical(StackToken token) {
+        if (token.owner == this) {
+            return token;
+        }
+        if (token instanceof TerminalToken) {
+            return terminals.get(token.value);
+        } else if (token instanceof VariableToken) {
+            return variables.get(token.value);
+        } else if (token instanceof StateToken) {
+            return states.get(((StateToken) token).state());
+        } else if (token instanceof LookAheadToken) {
+            return lookAheads.get(token.value);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the id of the token, creating a canonical token for a state or lookahead
+     * symbol that has none yet
+     * @param token
+     * @return id of token or NONE for an unknown terminal or variable
+     */
+    public int intern(StackToken token) {
+        int id = id(token);
+        if (id == NONE) {
+            if (token instanceof StateToken) {
+                id = state(((StateToken) token).state()).id;
+            } else if (token instanceof LookAheadToken) {
+                id = lookAhead(new TerminalToken(token.value.substring(1))).id;
+            }
+        }
+        return id;
+    }
+
+    /**
+     * @param token
+     * @return id of token or NONE if the token is not a symbol of the automaton
+     */
+    public int id(StackToken token) {
+        if (token == TerminalToken.EPSILON) {
+            return EPSILON;
+        }
+        if (token == StateToken.WILDCARD) {
+            return WILDCARD;
+        }
+        StackToken canonical = canonical(token);
+        return canonical == null ? NONE : canonical.id;
+    }
+
+    public StackToken symbol(int id) {
+        return symbols.get(id);
+    }
+
+    /**
+     * Interns all tokens of a list
+     * @param tokens
+     * @return ids in the same order as the tokens
+     */
+    public int[] internAll(List<StackToken> tokens) {
+        int[] result = new int[tokens.size()];
+        for (int k = 0; k < result.length; k++) {
+            result[k] = intern(tokens.get(k));
+        }
+        return result;
+    }
+
+    public boolean isTerminal(int id) {
+        return id >= 0 && terminalIds.get(id);
+    }
+
+    public boolean isVariable(int id) {
+        return id >= 0 && variableIds.get(id);
+    }
+
+    public boolean isState(int id) {
+        return id >= 0 && stateIds.get(id);
+    }
+
+    public boolean isLookAhead(int id) {
+        return id >= 0 && lookAheadIds.get(id);
+    }
+
+    public int nTerminals() {
+        return nTerminals;
+    }
+
+    public int size() {
+        return symbols.size();
+    }
+}
@@ -6,7 +6,7 @@ package edu.njit.cs314;
  */
 public class TerminalToken extends GrammarToken {
 
-    public static TerminalToken EPSILON = new TerminalToken() {};
+    public static final TerminalToken EPSILON = new TerminalToken() {};
 
     public TerminalToken(String value) {
         super(value);
@@ -23,10 +23,16 @@ public class TerminalToken extends GrammarToken {
 
     @Override
     public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
         if (!(obj instanceof TerminalToken)) {
             return false;
         }
         TerminalToken other = (TerminalToken) obj;
+        if (sameTable(other)) {
+            return false;
+        }
         return other.value.equals(this.value);
     }
 
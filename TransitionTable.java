@@ -0,0 +1,390 @@
+package edu.njit.cs314;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Frozen form of the transitions of a DPDA. Transitions which leave the stack alone
+ * are laid out in a dense table indexed by state and input symbol id, the others in
+ * a StackTopTrie, so that finding the transition for a step costs a few array loads
+ * instead of a scan over every transition of the state. The stack top trees and macro
+ * transitions can be written to a DPDA snapshot and read back, see writeTables().
+ * Date created: 10/18/26
+ */
+class TransitionTable {
+
+    // longest chain of steps folded into one macro transition
+    private static final int MAX_CHAIN = 32;
+
+    private final SymbolTable symbols;
+    private final int nStates;
+    private final int nInputs;
+    private final int nSymbols;
+    private final boolean[] accepting;
+    // true for states with a transition that reads input but leaves the stack alone
+    private final boolean[] readsInputOnEpsilonStack;
+    // isState[id] is true if symbol id is a StateToken and so matches StateToken.WILDCARD
+    private final boolean[] isState;
+    // [transition index] -> transition
+    private final CompiledTransition[] transitions;
+    // [state][input] -> transition which leaves the stack top alone
+    private final CompiledTransition[] byEpsilonStack;
+    // [state][input] -> transitions which pop a stack top
+    private final StackTopTrie byStackTop;
+    // [transition index] -> macro transition for the chain of steps starting with it
+    private final CompiledTransition[] macros;
+    private final int maxStackTop;
+
+    public TransitionTable(int nStates, SymbolTable symbols, Set<Integer> acceptStates,
+                           Map<Integer,List<DPDA.Transition>> transitionMap) {
+        this.nStates = nStates;
+        accepting = accepting(nStates, acceptStates);
+        readsInputOnEpsilonStack = new boolean[nStates];
+        this.symbols = symbols;
+        // input symbol ids are 0 (epsilon) .. nInputs-1
+        nInputs = symbols.nTerminals() + 1;
+        List<CompiledTransition> compiled = new ArrayList<>();
+        for (List<DPDA.Transition> transitions : transitionMap.values()) {
+            for (DPDA.Transition transition : transitions) {
+                compiled.add(new CompiledTransition(transition, compiled.size(),
+                        symbols.id(transition.inputSymbol),
+                        symbols.internAll(transition.stackTop),
+                        symbols.internAll(transition.stackTopReplacement)));
+            }
+        }
+        transitions = compiled.toArray(new CompiledTransition[0]);
+        nSymbols = symbols.size();
+        isState = isState(symbols);
+
+        byEpsilonStack = new CompiledTransition[nStates * nInputs];
+        List<CompiledTransition> popping = new ArrayList<>();
+        int longest = 0;
+        for (CompiledTransition transition : compiled) {
+            longest = Math.max(longest, transition.pop.length);
+            int slot = transition.currState * nInputs + transition.input;
+            if (transition.pop.length == 0) {
+                if (transition.input != SymbolTable.EPSILON) {
+                    readsInputOnEpsilonStack[transition.currState] = true;
+                }
+                if (byEpsilonStack[slot] == null) {
+                    byEpsilonStack[slot] = transition;
+                }
+            } else {
+                popping.add(transition);
+            }
+        }
+        maxStackTop = longest;
+        byStackTop = new StackTopTrie(popping, nStates * nInputs, nInputs, isState);
+        macros = new CompiledTransition[compiled.size()];
+        for (CompiledTransition transition : compiled) {
+            macros[transition.index] = chain(transition);
+        }
+    }
+
+    /**
+     * Reads the tables written by writeTables() instead of building them
+     * @param nStates
+     * @param symbols
+     * @param acceptStates
+     * @param transitions the compiled transitions in the order they were written
+     * @param rules the rules by the indexes writeTables() was given
+     * @param tables buffer positioned at the tables, left after them
+     * @throws IllegalArgumentException if an index in the tables is out of range
+     */
+    public TransitionTable(int nStates, SymbolTable symbols, Set<Integer> acceptStates,
+                           CompiledTransition[] transitions, DPDA.Rule[] rules,
+                           ByteBuffer tables) {
+        this.nStates = nStates;
+        this.symbols = symbols;
+        this.transitions = transitions;
+        accepting = accepting(nStates, acceptStates);
+        nInputs = symbols.nTerminals() + 1;
+        nSymbols = symbols.size();
+        isState = isState(symbols);
+        readsInputOnEpsilonStack = new boolean[nStates];
+        // the dense table is as large as states times inputs, so it is filled in again
+        // rather than read
+        byEpsilonStack = new CompiledTransition[nStates * nInputs];
+        int longest = 0;
+        for (CompiledTransition transition : transitions) {
+            longest = Math.max(longest, transition.pop.length);
+            if (transition.pop.length == 0) {
+                if (transition.input != SymbolTable.EPSILON) {
+                    readsInputOnEpsilonStack[transition.currState] = true;
+                }
+                int slot = transition.currState * nInputs + transition.input;
+                if (byEpsilonStack[slot] == null) {
+                    byEpsilonStack[slot] = transition;
+                }
+            }
+        }
+        maxStackTop = longest;
+        byStackTop = StackTopTrie.read(tables, nStates * nInputs, transitions, isState);
+        macros = new CompiledTransition[transitions.length];
+        for (CompiledTransition first : transitions) {
+            int steps = tables.getInt();
+            if (steps == 1) {
+                macros[first.index] = first;
+                continue;
+            }
+            int nextState = tables.getInt();
+            int[] push = new int[tables.getInt()];
+            for (int k = 0; k < push.length; k++) {
+                push[k] = tables.getInt();
+            }
+            int minStackSize = tables.getInt();
+            DPDA.Rule[] macroRules = new DPDA.Rule[tables.getInt()];
+            for (int k = 0; k < macroRules.length; k++) {
+                macroRules[k] = rules[tables.getInt()];
+            }
+            if (steps < 1 || nextState < 0 || nextState >= nStates) {
+                throw new IllegalArgumentException("Macro transition of " + steps
+                        + " steps to state " + nextState);
+            }
+            macros[first.index] = new CompiledTransition(first, nextState, push,
+                    Arrays.asList(macroRules), steps, minStackSize);
+        }
+    }
+
+    private static boolean[] accepting(int nStates, Set<Integer> acceptStates) {
+        boolean[] accepting = new boolean[nStates];
+        for (int state : acceptStates) {
+            if (state >= 0 && state < nStates) {
+                accepting[state] = true;
+            }
+        }
+        return accepting;
+    }
+
+    private static boolean[] isState(SymbolTable symbols) {
+        boolean[] isState = new boolean[symbols.size()];
+        for (int id = 0; id < isState.length; id++) {
+            isState[id] = symbols.isState(id);
+        }
+        return isState;
+    }
+
+    /**
+     * Writes the tables that are built from the transitions, so that the constructor
+     * reading them does not build them again: the StackTopTrie and for each transition the number of steps of its macro transition, followed for more
+     * than 1 by its next state, replacement length, replacement, minimum stack size,
+     * number of rules and rule indexes
+     * @param out
+     * @param ruleIndex index of each rule of the transitions
+     */
+    public void writeTables(DataOutputStream out, Map<DPDA.Rule,Integer> ruleIndex)
+            throws IOException {
+        byStackTop.write(out);
+        for (CompiledTransition macro : macros) {
+            out.writeInt(macro.steps);
+            if (macro.steps == 1) {
+                continue;
+            }
+            out.writeInt(macro.nextState);
+            out.writeInt(macro.push.length);
+            for (int id : macro.push) {
+                out.writeInt(id);
+            }
+            out.writeInt(macro.minStackSize);
+            out.writeInt(macro.rulesForReduction.size());
+            for (DPDA.Rule rule : macro.rulesForReduction) {
+                out.writeInt(ruleIndex.get(rule));
+            }
+        }
+    }
+
+    /**
+     * Follows the epsilon moves that are certain to come after the transition: an
+     * epsilon input/epsilon stack move, or an epsilon input/stack top move in a state
+     * that does not read input with an epsilon stack, whose stack top lies within the
+     * symbols pushed so far. A run at the end of its input stops when one symbol or
+     * less is left on the stack, so the macro records the stack size the chain needs
+     * before its first step to keep at least two symbols between its steps
+     * @param first
+     * @return a macro transition for the chain, or first if no step is certain to follow
+     */
+    private CompiledTransition chain(CompiledTransition first) {
+        int[] known = first.push;
+        int state = first.nextState;
+        int steps = 1;
+        // change of the stack size since before the first step, and its least value
+        // before any step after the first
+        int depth = first.push.length - first.pop.length;
+        int minDepth = depth;
+        List<DPDA.Rule> rules = new ArrayList<>();
+        CompiledTransition[] found = new CompiledTransition[1];
+        CompiledTransition next = first;
+        while (true) {
+            if (next.rulesForReduction != null) {
+                rules.addAll(next.rulesForReduction);
+            }
+            if (steps == MAX_CHAIN) {
+                break;
+            }
+            next = byEpsilonStack[state * nInputs + SymbolTable.EPSILON];
+            if (next == null) {
+                if (readsInputOnEpsilonStack[state]
+                        || !byStackTop.matchKnown(state * nInputs + SymbolTable.EPSILON, known, found)) {
+                    break;
+                }
+                next = found[0];
+            }
+            minDepth = Math.min(minDepth, depth);
+            int[] after = new int[next.push.length + known.length - next.pop.length];
+            System.arraycopy(next.push, 0, after, 0, next.push.length);
+            System.arraycopy(known, next.pop.length, after, next.push.length,
+                    known.length - next.pop.length);
+            known = after;
+            depth += next.push.length - next.pop.length;
+            state = next.nextState;
+            steps++;
+        }
+        if (steps == 1) {
+            return first;
+        }
+        return new CompiledTransition(first, state, known, rules, steps,
+                Math.max(first.pop.length, 2 - minDepth));
+    }
+
+    /**
+     * @param transition a transition chosen by next() or nextWithoutInput()
+     * @param stackSize size of the stack before the transition
+     * @return the macro transition for the steps certain to follow it, which has the same
+     * effect as making them one at a time, or the transition itself if there is none
+     * or the stack is too small for all of them to be certain
+     */
+    public CompiledTransition macro(CompiledTransition transition, int stackSize) {
+        if (transition == null) {
+            return null;
+        }
+        CompiledTransition macro = macros[transition.index];
+        return stackSize >= macro.minStackSize ? macro : transition;
+    }
+
+    /**
+     * @return length of the longest stack top, i.e. how deep a step looks into the stack
+     */
+    public int maxStackTop() {
+        return maxStackTop;
+    }
+
+    public SymbolTable symbols() {
+        return symbols;
+    }
+
+    public int nStates() {
+        return nStates;
+    }
+
+    public int nTransitions() {
+        return transitions.length;
+    }
+
+    /**
+     * @param index
+     * @return the transition with that index, numbered in the order they were compiled
+     */
+    public CompiledTransition transition(int index) {
+        return transitions[index];
+    }
+
+    /**
+     * @return number of input symbol ids, including epsilon (id 0)
+     */
+    public int nInputs() {
+        return nInputs;
+    }
+
+    /**
+     * @param inputSymbol
+     * @return id of input symbol or SymbolTable.NONE if it is not in the input alphabet
+     */
+    public int inputId(TerminalToken inputSymbol) {
+        int id = symbols.id(inputSymbol);
+        return id < nInputs ? id : SymbolTable.NONE;
+    }
+
+    /**
+     * Finds the transition for the current state and input symbol id (which may be epsilon).
+     * If epsilonStack is true only a transition which leaves the stack alone is considered,
+     * otherwise only a transition whose stack top matches the top of the stack
+     * @param currState
+     * @param input
+     * @param epsilonStack
+     * @param stack
+     * @return the transition or null if there is none
+     */
+    public CompiledTransition match(int currState, int input, boolean epsilonStack,
+                                    IntStack stack) {
+        if (input == SymbolTable.NONE || currState < 0 || currState >= nStates) {
+            return null;
+        }
+        int slot = currState * nInputs + input;
+        if (epsilonStack) {
+            return byEpsilonStack[slot];
+        }
+        return byStackTop.match(slot, stack);
+    }
+
+    /**
+     * Finds the transition for the next step, trying in order epsilon input/epsilon stack,
+     * input symbol/epsilon stack, epsilon input/stack top and input symbol/stack top
+     * @param currState
+     * @param input id of next input symbol or SymbolTable.NONE at end of input
+     * @param stack
+     * @return the transition or null if the input is rejected
+     */
+    public CompiledTransition next(int currState, int input, IntStack stack) {
+        CompiledTransition transition = match(currState, SymbolTable.EPSILON, true, stack);
+        if (transition == null) {
+            transition = match(currState, input, true, stack);
+        }
+        if (transition == null) {
+            transition = match(currState, SymbolTable.EPSILON, false, stack);
+        }
+        if (transition == null) {
+            transition = match(currState, input, false, stack);
+        }
+        return transition;
+    }
+
+    /**
+     * Finds the transition for the next step if it does not depend on the next input
+     * symbol, i.e. it is an epsilon input transition that next() would choose whatever
+     * the input is
+     * @param currState
+     * @param stack
+     * @return the transition or null if there is none or the choice depends on the input
+     */
+    public CompiledTransition nextWithoutInput(int currState, IntStack stack) {
+        CompiledTransition transition = match(currState, SymbolTable.EPSILON, true, stack);
+        if (transition == null && currState >= 0 && currState < nStates
+                && !readsInputOnEpsilonStack[currState]) {
+            transition = match(currState, SymbolTable.EPSILON, false, stack);
+        }
+        return transition;
+    }
+
+    public boolean isAccepting(int state) {
+        return state >= 0 && state < nStates && accepting[state];
+    }
+
+    /**
+     * Compares the stack top of a transition (first symbol is top of stack) against
+     * the top of the stack in place
+     */
+    public boolean matchesTop(int[] stackTop, IntStack stack) {
+        if (stackTop.length > stack.size()) {
+            return false;
+        }
+        for (int k = 0; k < stackTop.length; k++) {
+            int id = stack.peek(k);
+            if (stackTop[k] != id && !(stackTop[k] == SymbolTable.WILDCARD && isState[id])) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
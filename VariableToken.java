@@ -17,10 +17,16 @@ public class VariableToken extends GrammarToken {
 
     @Override
     public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
         if (!(obj instanceof VariableToken)) {
             return false;
         }
         VariableToken other = (VariableToken) obj;
+        if (sameTable(other)) {
+            return false;
+        }
         return other.value.equals(this.value);
     }
 
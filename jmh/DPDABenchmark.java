@@ -0,0 +1,197 @@
+package edu.njit.cs314;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmarks of the engine against the automata of the tests of DPDA, to compare
+ * numbers before and after a change to it. Built and run with
+ * <pre>
+ * mvn -Pjmh package
+ * java -jar target/benchmarks.jar [JMH options]
+ * </pre>
+ * main() turns on the gc profiler, so every result comes with the bytes allocated per
+ * operation and the number of collections. The benchmarks are
+ * <ul>
+ * <li>build: building the automaton by addTransition(), per automaton</li>
+ * <li>load: loading a snapshot of it written by DPDA.save(), per automaton</li>
+ * <li>accepts: recognition without a trace, per input</li>
+ * <li>generated: the same with the code of DPDA.generateCode(), per input</li>
+ * <li>process: process() with its trace of configurations, per input</li>
+ * <li>derivations: process() and printDerivations() of its trace, output discarded,
+ * per input</li>
+ * </ul>
+ * for automaton test1, test2, test2-lr and test3, on inputs made by Benchmark.input()
+ * of each size and shape, flat or nested. Traces hold every configuration, so process
+ * only goes up to 100000 tokens, and the sentential forms of a derivation add up to the
+ * square of its length, so derivations only go up to 1000. Pick a part of the matrix
+ * with e.g. -p automaton=test3 -p size=1000 DPDABenchmark.accepts.
+ * Benchmark is a plain main() that measures the same without JMH, for when this build
+ * cannot be run.
+ * Date created: 10/18/26
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DPDABenchmark {
+
+    private static final PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+
+    @State(Scope.Benchmark)
+    public static class Automaton {
+
+        @Param({"test1", "test2", "test2-lr", "test3"})
+        public String automaton;
+
+        Path snapshot;
+
+        @Setup
+        public void save() throws Exception {
+            snapshot = Files.createTempFile(automaton, ".dpda");
+            BatchValidator.loadAutomaton(automaton).save(snapshot);
+        }
+
+        @TearDown
+        public void delete() throws Exception {
+            Files.delete(snapshot);
+        }
+    }
+
+    /**
+     * An accepted input of the automaton, of the size given by a subclass
+     */
+    @State(Scope.Benchmark)
+    public abstract static class Input {
+
+        @Param({"test1", "test2", "test2-lr", "test3"})
+        public String automaton;
+
+        @Param({"flat", "nested"})
+        public String shape;
+
+        DPDA pda;
+        List<TerminalToken> tokens;
+
+        void prepare(int size) throws Exception {
+            pda = BatchValidator.loadAutomaton(automaton);
+            // the runner of the same name as the annotation, which makes the inputs
+            tokens = edu.njit.cs314.Benchmark.input(pda, automaton, shape, size);
+            if (!pda.accepts(tokens).accepted) {
+                throw new IllegalStateException(automaton + " does not accept its " + shape
+                        + " input of " + tokens.size() + " tokens");
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Recognition extends Input {
+
+        @Param({"10", "1000", "100000", "10000000"})
+        public int size;
+
+        GeneratedDPDA generated;
+
+        @Setup
+        public void setUp() throws Exception {
+            prepare(size);
+            generated = pda.generateCode();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Trace extends Input {
+
+        @Param({"10", "1000", "100000"})
+        public int size;
+
+        @Setup
+        public void setUp() throws Exception {
+            prepare(size);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Derivation extends Input {
+
+        @Param({"10", "1000"})
+        public int size;
+
+        @Setup
+        public void setUp() throws Exception {
+            prepare(size);
+        }
+    }
+
+    @Benchmark
+    public DPDA build(Automaton state) throws Exception {
+        return BatchValidator.loadAutomaton(state.automaton);
+    }
+
+    @Benchmark
+    public DPDA load(Automaton state) throws Exception {
+        return DPDA.load(state.snapshot);
+    }
+
+    @Benchmark
+    public RecognitionResult accepts(Recognition state) {
+        return state.pda.accepts(state.tokens);
+    }
+
+    @Benchmark
+    public RecognitionResult generated(Recognition state) {
+        return state.generated.accepts(state.tokens);
+    }
+
+    @Benchmark
+    public Object process(Trace state) {
+        return state.pda.process(state.tokens);
+    }
+
+    @Benchmark
+    public void derivations(Derivation state) {
+        PrintStream stdout = System.out;
+        System.setOut(DISCARD);
+        try {
+            state.pda.printDerivations(state.pda.process(state.tokens));
+        } finally {
+            System.setOut(stdout);
+        }
+    }
+
+    /**
+     * Runs the benchmarks with the gc profiler on, see the class comment
+     * @param args JMH options, e.g. -p size=1000 or the benchmarks to run
+     */
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions options = new CommandLineOptions(args);
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.parent(options).addProfiler(GCProfiler.class);
+        if (options.getIncludes().isEmpty()) {
+            builder.include(DPDABenchmark.class.getName());
+        }
+        new Runner(builder.build()).run();
+    }
+}